@@ -0,0 +1,73 @@
+package decorice.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import decorice.DecoratorModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving a decorated binding and of calling through the chain,
+ * by chain depth and by how the chain is scoped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+        "-XX:+IgnoreUnrecognizedVMOptions",
+        "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class ChainBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int depth;
+
+    @Param({"UNSCOPED", "SINGLETON_SCOPE", "EAGER_SINGLETON", "CUSTOM_SCOPE", "CONCURRENT_SINGLETON"})
+    public Scoping scoping;
+
+    @Param({"false", "true"})
+    public boolean fused;
+
+    private Injector injector;
+    private Foo instance;
+
+    @Setup
+    public void setUp() {
+        final Class<? extends Foo>[] layers = Layers.first(depth);
+        injector = Guice.createInjector(new DecoratorModule() {{
+            final ChainBindingBuilder chain = bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layers[0],
+                            Arrays.copyOfRange(layers, 1, layers.length));
+            scoping.apply(fused ? chain.fused() : chain);
+        }});
+        instance = injector.getInstance(Foo.class);
+        if (instance.bar() != depth) {
+            throw new IllegalStateException("chain is not " + depth + " deep");
+        }
+    }
+
+    @Benchmark
+    public Foo getInstance() {
+        return injector.getInstance(Foo.class);
+    }
+
+    @Benchmark
+    public int invoke() {
+        return instance.bar();
+    }
+}
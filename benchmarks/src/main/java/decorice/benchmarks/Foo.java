@@ -0,0 +1,5 @@
+package decorice.benchmarks;
+
+interface Foo {
+    int bar();
+}
@@ -0,0 +1,8 @@
+package decorice.benchmarks;
+
+final class FooImpl implements Foo {
+    @Override
+    public int bar() {
+        return 0;
+    }
+}
@@ -0,0 +1,120 @@
+package decorice.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.PrivateModule;
+import com.google.inject.name.Names;
+import decorice.DecoratorModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to create an injector holding many decorated chains. This exercises
+ * {@code DecoratorModule.configure(Binder)} as well as Guice's own binding
+ * processing.
+ *
+ * <p>{@code ISOLATED} installs one {@link DecoratorModule} per chain, each in
+ * a {@link PrivateModule} that exposes the chain under its own name.
+ * {@code LINKED} and {@code FUSED} declare all the chains on a single
+ * {@link DecoratorModule}; linked chains then share their inner
+ * {@code @DecoratedBy} bindings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {
+        "-XX:+IgnoreUnrecognizedVMOptions",
+        "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class InjectorCreationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int chains;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"ISOLATED", "LINKED", "FUSED"})
+    public String style;
+
+    private List<Module> modules;
+
+    @Setup
+    public void setUp() {
+        modules = new ArrayList<>(chains);
+        final Class<? extends Foo>[] layers = Layers.first(depth);
+        if (style.equals("ISOLATED")) {
+            for (int i = 0; i < chains; i++) {
+                modules.add(new IsolatedChain(name(i), layers));
+            }
+            return;
+        }
+        final DecoratorModule module = new DecoratorModule();
+        for (int i = 0; i < chains; i++) {
+            final DecoratorModule.ChainBindingBuilder chain = module
+                    .bind(Foo.class)
+                    .annotatedWith(name(i).getAnnotation())
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layers[0],
+                            Arrays.copyOfRange(layers, 1, layers.length));
+            if (style.equals("FUSED")) {
+                chain.fused();
+            }
+        }
+        modules.add(module);
+    }
+
+    private static Key<Foo> name(final int i) {
+        return Key.get(Foo.class, Names.named("chain-" + i));
+    }
+
+    @Benchmark
+    public Injector createInjector() {
+        return Guice.createInjector(modules);
+    }
+
+    private static final class IsolatedChain extends PrivateModule {
+        private final Key<Foo> exposed;
+        private final Class<? extends Foo>[] layers;
+
+        private IsolatedChain(final Key<Foo> exposed, final Class<? extends Foo>[] layers) {
+            this.exposed = exposed;
+            this.layers = layers;
+        }
+
+        @Override
+        protected void configure() {
+            install(new ChainModule(layers));
+            bind(exposed).to(Foo.class);
+            expose(exposed);
+        }
+    }
+
+    private static final class ChainModule extends DecoratorModule {
+        private ChainModule(final Class<? extends Foo>[] layers) {
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layers[0],
+                            Arrays.copyOfRange(layers, 1, layers.length));
+        }
+    }
+}
@@ -0,0 +1,932 @@
+package decorice.benchmarks;
+
+import decorice.DecoratedBy;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+
+/**
+ * 64 interchangeable decorators so chains of any depth up to 64 can be built
+ * without repeating a layer (each layer is keyed by its own class).
+ */
+@SuppressWarnings("unchecked")
+final class Layers {
+
+    static final int MAX_DEPTH = 64;
+
+    private static final Class<? extends Foo>[] ALL = new Class[] {
+            L1.class, L2.class, L3.class, L4.class, L5.class, L6.class, L7.class, L8.class,
+            L9.class, L10.class, L11.class, L12.class, L13.class, L14.class, L15.class, L16.class,
+            L17.class, L18.class, L19.class, L20.class, L21.class, L22.class, L23.class, L24.class,
+            L25.class, L26.class, L27.class, L28.class, L29.class, L30.class, L31.class, L32.class,
+            L33.class, L34.class, L35.class, L36.class, L37.class, L38.class, L39.class, L40.class,
+            L41.class, L42.class, L43.class, L44.class, L45.class, L46.class, L47.class, L48.class,
+            L49.class, L50.class, L51.class, L52.class, L53.class, L54.class, L55.class, L56.class,
+            L57.class, L58.class, L59.class, L60.class, L61.class, L62.class, L63.class, L64.class
+    };
+
+    private Layers() {}
+
+    static Class<? extends Foo>[] first(final int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("depth must be in [1, " + MAX_DEPTH + "]: " + depth);
+        }
+        return Arrays.copyOf(ALL, depth);
+    }
+
+    static final class L1 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L1(@DecoratedBy(L1.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L2 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L2(@DecoratedBy(L2.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L3 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L3(@DecoratedBy(L3.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L4 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L4(@DecoratedBy(L4.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L5 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L5(@DecoratedBy(L5.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L6 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L6(@DecoratedBy(L6.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L7 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L7(@DecoratedBy(L7.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L8 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L8(@DecoratedBy(L8.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L9 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L9(@DecoratedBy(L9.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L10 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L10(@DecoratedBy(L10.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L11 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L11(@DecoratedBy(L11.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L12 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L12(@DecoratedBy(L12.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L13 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L13(@DecoratedBy(L13.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L14 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L14(@DecoratedBy(L14.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L15 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L15(@DecoratedBy(L15.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L16 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L16(@DecoratedBy(L16.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L17 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L17(@DecoratedBy(L17.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L18 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L18(@DecoratedBy(L18.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L19 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L19(@DecoratedBy(L19.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L20 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L20(@DecoratedBy(L20.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L21 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L21(@DecoratedBy(L21.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L22 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L22(@DecoratedBy(L22.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L23 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L23(@DecoratedBy(L23.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L24 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L24(@DecoratedBy(L24.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L25 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L25(@DecoratedBy(L25.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L26 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L26(@DecoratedBy(L26.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L27 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L27(@DecoratedBy(L27.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L28 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L28(@DecoratedBy(L28.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L29 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L29(@DecoratedBy(L29.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L30 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L30(@DecoratedBy(L30.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L31 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L31(@DecoratedBy(L31.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L32 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L32(@DecoratedBy(L32.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L33 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L33(@DecoratedBy(L33.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L34 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L34(@DecoratedBy(L34.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L35 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L35(@DecoratedBy(L35.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L36 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L36(@DecoratedBy(L36.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L37 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L37(@DecoratedBy(L37.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L38 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L38(@DecoratedBy(L38.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L39 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L39(@DecoratedBy(L39.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L40 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L40(@DecoratedBy(L40.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L41 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L41(@DecoratedBy(L41.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L42 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L42(@DecoratedBy(L42.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L43 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L43(@DecoratedBy(L43.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L44 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L44(@DecoratedBy(L44.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L45 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L45(@DecoratedBy(L45.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L46 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L46(@DecoratedBy(L46.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L47 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L47(@DecoratedBy(L47.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L48 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L48(@DecoratedBy(L48.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L49 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L49(@DecoratedBy(L49.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L50 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L50(@DecoratedBy(L50.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L51 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L51(@DecoratedBy(L51.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L52 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L52(@DecoratedBy(L52.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L53 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L53(@DecoratedBy(L53.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L54 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L54(@DecoratedBy(L54.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L55 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L55(@DecoratedBy(L55.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L56 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L56(@DecoratedBy(L56.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L57 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L57(@DecoratedBy(L57.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L58 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L58(@DecoratedBy(L58.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L59 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L59(@DecoratedBy(L59.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L60 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L60(@DecoratedBy(L60.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L61 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L61(@DecoratedBy(L61.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L62 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L62(@DecoratedBy(L62.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L63 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L63(@DecoratedBy(L63.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+
+    static final class L64 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        L64(@DecoratedBy(L64.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public int bar() {
+            return decorated.bar() + 1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package decorice.benchmarks;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import decorice.DecoratorModule;
+import decorice.DecoriceScopes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.inject.Scopes.SINGLETON;
+
+/**
+ * The ways a chain can be scoped through {@link DecoratorModule.ScopedBindingBuilder}.
+ */
+public enum Scoping {
+    UNSCOPED {
+        @Override
+        void apply(final DecoratorModule.ScopedBindingBuilder b) {
+        }
+    },
+    SINGLETON_SCOPE {
+        @Override
+        void apply(final DecoratorModule.ScopedBindingBuilder b) {
+            b.in(SINGLETON);
+        }
+    },
+    EAGER_SINGLETON {
+        @Override
+        void apply(final DecoratorModule.ScopedBindingBuilder b) {
+            b.asEagerSingleton();
+        }
+    },
+    CONCURRENT_SINGLETON {
+        @Override
+        void apply(final DecoratorModule.ScopedBindingBuilder b) {
+            b.in(DecoriceScopes.CONCURRENT_SINGLETON);
+        }
+    },
+    CUSTOM_SCOPE {
+        @Override
+        void apply(final DecoratorModule.ScopedBindingBuilder b) {
+            b.in(new MapScope());
+        }
+    };
+
+    abstract void apply(DecoratorModule.ScopedBindingBuilder b);
+
+    /**
+     * Stands in for a request-like scope that is always entered: one lookup
+     * in a concurrent map per provision.
+     */
+    private static final class MapScope implements Scope {
+        private final ConcurrentMap<Key<?>, Object> values =
+                new ConcurrentHashMap<>();
+
+        @Override
+        public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+            return new Provider<T>() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public T get() {
+                    final Object current = values.get(key);
+                    if (current != null) {
+                        return (T) current;
+                    }
+                    final T created = unscoped.get();
+                    final Object raced = values.putIfAbsent(key, created);
+                    return raced == null ? created : (T) raced;
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "MapScope";
+        }
+    }
+}
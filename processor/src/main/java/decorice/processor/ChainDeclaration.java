@@ -0,0 +1,378 @@
+package decorice.processor;
+
+import decorice.processor.DecoratorChainProcessor.Mirrors;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One {@code @DecoratorChain}, checked against the classes it names.
+ */
+final class ChainDeclaration {
+
+    private static final String ANNOTATION = "java.lang.annotation.Annotation";
+    private static final String PASS_THROUGH = "decorice.PassThrough";
+
+    /**
+     * A constructor parameter other than the decorated instance.
+     */
+    static final class Dependency {
+        final TypeMirror type;
+        final AnnotationMirror qualifier;
+
+        private Dependency(final TypeMirror type, final AnnotationMirror qualifier) {
+            this.type = type;
+            this.qualifier = qualifier;
+        }
+    }
+
+    static final class Layer {
+        final TypeElement decorator;
+        final int decoratedIndex;
+        /**
+         * {@code null} at {@code decoratedIndex}.
+         */
+        final List<Dependency> parameters;
+        final boolean injectsMembers;
+        /**
+         * Methods of the bound type this layer only forwards.
+         */
+        final Set<ExecutableElement> passThrough;
+
+        private Layer(
+                final TypeElement decorator,
+                final int decoratedIndex,
+                final List<Dependency> parameters,
+                final boolean injectsMembers,
+                final Set<ExecutableElement> passThrough) {
+            this.decorator = decorator;
+            this.decoratedIndex = decoratedIndex;
+            this.parameters = parameters;
+            this.injectsMembers = injectsMembers;
+            this.passThrough = passThrough;
+        }
+    }
+
+    final TypeElement bind;
+    final TypeElement annotatedWith;
+    final String named;
+    final TypeElement to;
+    /**
+     * Outermost first.
+     */
+    final List<Layer> decoratedBy;
+    final TypeElement in;
+    /**
+     * The instance methods of the bound type.
+     */
+    final List<ExecutableElement> methods;
+
+    private ChainDeclaration(
+            final TypeElement bind,
+            final TypeElement annotatedWith,
+            final String named,
+            final TypeElement to,
+            final List<Layer> decoratedBy,
+            final TypeElement in,
+            final List<ExecutableElement> methods) {
+        this.bind = bind;
+        this.annotatedWith = annotatedWith;
+        this.named = named;
+        this.to = to;
+        this.decoratedBy = decoratedBy;
+        this.in = in;
+        this.methods = methods;
+    }
+
+    /**
+     * Whether some layer forwards a method, so that the chain is worth
+     * dispatching around it.
+     */
+    boolean hasPassThrough() {
+        for (final Layer layer : decoratedBy) {
+            if (!layer.passThrough.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code null} after reporting why the declaration cannot be
+     * wired.
+     */
+    static ChainDeclaration parse(
+            final ProcessingEnvironment env,
+            final TypeElement owner,
+            final AnnotationMirror declaration) {
+        return new Parser(env, owner, declaration).parse();
+    }
+
+    private static final class Parser {
+        private final ProcessingEnvironment env;
+        private final TypeElement owner;
+        private final AnnotationMirror declaration;
+        private boolean valid = true;
+
+        private Parser(
+                final ProcessingEnvironment env,
+                final TypeElement owner,
+                final AnnotationMirror declaration) {
+            this.env = env;
+            this.owner = owner;
+            this.declaration = declaration;
+        }
+
+        ChainDeclaration parse() {
+            final TypeElement bind = element("bind");
+            if (!((DeclaredType) bind.asType()).getTypeArguments().isEmpty()) {
+                error(bind.getQualifiedName() + " is generic; generic chains are not supported");
+            }
+            final TypeElement to = element("to");
+            checkAccessible(to);
+            checkImplements(to, bind);
+
+            final List<ExecutableElement> methods = methods(bind);
+            final List<Layer> layers = new ArrayList<>();
+            for (final AnnotationValue value : Mirrors.list(
+                    Mirrors.value(env, declaration, "decoratedBy"))) {
+                final Layer layer = layer(
+                        (TypeElement) env.getTypeUtils().asElement(Mirrors.type(value)),
+                        bind,
+                        methods);
+                if (layer != null) {
+                    layers.add(layer);
+                }
+            }
+            if (layers.isEmpty() && valid) {
+                error("decoratedBy is empty");
+            }
+
+            final TypeElement annotatedWith = optional(element("annotatedWith"));
+            final String named = (String) Mirrors.value(env, declaration, "named").getValue();
+            if (annotatedWith != null && !named.isEmpty()) {
+                error("use either annotatedWith or named");
+            }
+            return valid
+                    ? new ChainDeclaration(
+                            bind,
+                            annotatedWith,
+                            named.isEmpty() ? null : named,
+                            to,
+                            layers,
+                            optional(element("in")),
+                            methods)
+                    : null;
+        }
+
+        private List<ExecutableElement> methods(final TypeElement bind) {
+            final List<ExecutableElement> methods = new ArrayList<>();
+            for (final ExecutableElement method
+                    : ElementFilter.methodsIn(env.getElementUtils().getAllMembers(bind))) {
+                final TypeElement declaring = (TypeElement) method.getEnclosingElement();
+                if (!declaring.getQualifiedName().contentEquals("java.lang.Object")
+                        && !method.getModifiers().contains(Modifier.STATIC)
+                        && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                    methods.add(method);
+                }
+            }
+            return methods;
+        }
+
+        /**
+         * A layer passes a method through when the implementation it ends up
+         * with, declared or inherited, is marked {@code @PassThrough}.
+         */
+        private Set<ExecutableElement> passThrough(
+                final TypeElement decorator,
+                final List<ExecutableElement> methods) {
+            final Set<ExecutableElement> passThrough = new HashSet<>();
+            for (final ExecutableElement method : methods) {
+                final ExecutableElement implementation = implementation(decorator, method);
+                if (implementation != null
+                        && Mirrors.find(implementation, PASS_THROUGH) != null) {
+                    passThrough.add(method);
+                }
+            }
+            return passThrough;
+        }
+
+        private ExecutableElement implementation(
+                final TypeElement decorator,
+                final ExecutableElement method) {
+            for (TypeElement c = decorator;
+                 c != null;
+                 c = (TypeElement) env.getTypeUtils().asElement(c.getSuperclass())) {
+                for (final ExecutableElement candidate
+                        : ElementFilter.methodsIn(c.getEnclosedElements())) {
+                    if (env.getElementUtils().overrides(candidate, method, decorator)) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Layer layer(
+                final TypeElement decorator,
+                final TypeElement bind,
+                final List<ExecutableElement> methods) {
+            checkAccessible(decorator);
+            checkImplements(decorator, bind);
+            final List<ExecutableElement> constructors = new ArrayList<>();
+            for (final ExecutableElement c
+                    : ElementFilter.constructorsIn(decorator.getEnclosedElements())) {
+                if (isInjectable(c)) {
+                    constructors.add(c);
+                }
+            }
+            if (constructors.size() != 1) {
+                error(decorator.getQualifiedName()
+                        + " needs exactly one constructor annotated with @Inject");
+                return null;
+            }
+            final ExecutableElement constructor = constructors.get(0);
+            if (!isVisibleFromOwnerPackage(constructor)) {
+                error("the @Inject constructor of " + decorator.getQualifiedName()
+                        + " is not accessible from " + packageOf(owner));
+            }
+            final List<Dependency> parameters = new ArrayList<>();
+            int decoratedIndex = -1;
+            for (final VariableElement parameter : constructor.getParameters()) {
+                final AnnotationMirror decoratedBy =
+                        Mirrors.find(parameter, DecoratorChainProcessor.DECORATED_BY);
+                if (decoratedBy != null
+                        && env.getTypeUtils().isSameType(
+                                Mirrors.type(Mirrors.value(env, decoratedBy, "value")),
+                                decorator.asType())
+                        && env.getTypeUtils().isSameType(
+                                env.getTypeUtils().erasure(parameter.asType()),
+                                env.getTypeUtils().erasure(bind.asType()))) {
+                    decoratedIndex = parameters.size();
+                    parameters.add(null);
+                } else {
+                    parameters.add(new Dependency(parameter.asType(), qualifier(parameter)));
+                }
+            }
+            if (decoratedIndex < 0) {
+                error(decorator.getQualifiedName() + " has no " + bind.getSimpleName()
+                        + " parameter annotated with @DecoratedBy("
+                        + decorator.getSimpleName() + ".class)");
+                return null;
+            }
+            return new Layer(
+                    decorator,
+                    decoratedIndex,
+                    parameters,
+                    injectsMembers(decorator),
+                    passThrough(decorator, methods));
+        }
+
+        private AnnotationMirror qualifier(final VariableElement parameter) {
+            for (final AnnotationMirror mirror : parameter.getAnnotationMirrors()) {
+                final Element type = mirror.getAnnotationType().asElement();
+                if (Mirrors.find(type, "com.google.inject.BindingAnnotation") != null
+                        || Mirrors.find(type, "javax.inject.Qualifier") != null) {
+                    return mirror;
+                }
+            }
+            return null;
+        }
+
+        private boolean injectsMembers(final TypeElement decorator) {
+            for (TypeElement c = decorator;
+                 c != null;
+                 c = (TypeElement) env.getTypeUtils().asElement(c.getSuperclass())) {
+                for (final Element member : c.getEnclosedElements()) {
+                    if ((member.getKind().isField() || member.getKind() == ElementKind.METHOD)
+                            && isInjectable(member)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean isInjectable(final Element element) {
+            return Mirrors.find(element, "javax.inject.Inject") != null
+                    || Mirrors.find(element, "com.google.inject.Inject") != null;
+        }
+
+        private void checkAccessible(final TypeElement type) {
+            for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+                final TypeElement t = (TypeElement) e;
+                if (t.getNestingKind() == NestingKind.MEMBER
+                        && !t.getModifiers().contains(Modifier.STATIC)
+                        && t.getKind().isClass()) {
+                    error(t.getQualifiedName() + " must be static to be constructed");
+                    return;
+                }
+                if (!isVisibleFromOwnerPackage(t)) {
+                    error(t.getQualifiedName() + " is not accessible from " + packageOf(owner));
+                    return;
+                }
+            }
+        }
+
+        private boolean isVisibleFromOwnerPackage(final Element element) {
+            if (element.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+            return !element.getModifiers().contains(Modifier.PRIVATE)
+                    && packageOf(element).equals(packageOf(owner));
+        }
+
+        private void checkImplements(final TypeElement type, final TypeElement bind) {
+            if (!env.getTypeUtils().isAssignable(
+                    env.getTypeUtils().erasure(type.asType()),
+                    env.getTypeUtils().erasure(bind.asType()))) {
+                error(type.getQualifiedName() + " is not a " + bind.getQualifiedName());
+            }
+        }
+
+        private String packageOf(final Element element) {
+            final PackageElement p = env.getElementUtils().getPackageOf(element);
+            return p.getQualifiedName().toString();
+        }
+
+        private TypeElement element(final String attribute) {
+            final TypeMirror type = Mirrors.type(Mirrors.value(env, declaration, attribute));
+            return type.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) env.getTypeUtils().asElement(type)
+                    : null;
+        }
+
+        private TypeElement optional(final TypeElement annotation) {
+            return annotation == null || annotation.getQualifiedName().contentEquals(ANNOTATION)
+                    ? null
+                    : annotation;
+        }
+
+        private void error(final String message) {
+            valid = false;
+            env.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    message,
+                    owner,
+                    declaration);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package decorice.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns {@code @DecoratorChain} declarations into generated Guice modules
+ * and checks every {@code @DecoratedBy} parameter, so that misconfigured
+ * chains fail the build rather than injector creation.
+ */
+public class DecoratorChainProcessor extends AbstractProcessor {
+
+    static final String DECORATED_BY = "decorice.DecoratedBy";
+    static final String DECORATOR_CHAIN = "decorice.DecoratorChain";
+    static final String DECORATOR_CHAINS = "decorice.DecoratorChains";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(
+                DECORATED_BY,
+                DECORATOR_CHAIN,
+                DECORATOR_CHAINS));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(
+            final Set<? extends TypeElement> annotations,
+            final RoundEnvironment round) {
+        for (final TypeElement annotation : annotations) {
+            final String name = annotation.getQualifiedName().toString();
+            for (final Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (name.equals(DECORATED_BY)) {
+                    checkDecoratedParameter(element);
+                } else if (element.getKind().isClass() || element.getKind().isInterface()) {
+                    declarationsOn((TypeElement) element, name);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A {@code @DecoratedBy} parameter must name the class whose constructor
+     * declares it, and that class must be what it decorates.
+     */
+    private void checkDecoratedParameter(final Element parameter) {
+        final Element method = parameter.getEnclosingElement();
+        if (method.getKind() != ElementKind.CONSTRUCTOR) {
+            return;
+        }
+        final TypeElement decorator = (TypeElement) method.getEnclosingElement();
+        final AnnotationMirror decoratedBy = Mirrors.find(parameter, DECORATED_BY);
+        final TypeMirror value = Mirrors.type(Mirrors.value(processingEnv, decoratedBy, "value"));
+        if (!processingEnv.getTypeUtils().isSameType(value, decorator.asType())) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    "@DecoratedBy on a parameter of " + decorator.getQualifiedName()
+                            + " must name " + decorator.getSimpleName() + ".class",
+                    parameter,
+                    decoratedBy);
+        } else if (!processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(decorator.asType()),
+                processingEnv.getTypeUtils().erasure(parameter.asType()))) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    decorator.getQualifiedName() + " does not implement "
+                            + parameter.asType() + ", the type it decorates",
+                    parameter,
+                    decoratedBy);
+        }
+    }
+
+    private void declarationsOn(final TypeElement type, final String annotation) {
+        final AnnotationMirror mirror = Mirrors.find(type, annotation);
+        final List<AnnotationMirror> declarations = new ArrayList<>();
+        if (annotation.equals(DECORATOR_CHAIN)) {
+            declarations.add(mirror);
+        } else {
+            for (final AnnotationValue value : Mirrors.list(
+                    Mirrors.value(processingEnv, mirror, "value"))) {
+                declarations.add((AnnotationMirror) value.getValue());
+            }
+        }
+        final List<ChainDeclaration> chains = new ArrayList<>();
+        boolean valid = true;
+        for (final AnnotationMirror declaration : declarations) {
+            final ChainDeclaration chain =
+                    ChainDeclaration.parse(processingEnv, type, declaration);
+            valid &= chain != null;
+            chains.add(chain);
+        }
+        if (valid) {
+            write(type, chains);
+        }
+    }
+
+    private void write(final TypeElement type, final List<ChainDeclaration> chains) {
+        final ModuleWriter module = new ModuleWriter(processingEnv, type, chains);
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(module.qualifiedName(), type);
+            try (final Writer out = file.openWriter()) {
+                out.write(module.source());
+            }
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    "Could not write " + module.qualifiedName() + ": " + e.getMessage(),
+                    type);
+        }
+    }
+
+    /**
+     * Reading annotations through mirrors, since the classes they name are
+     * not loaded while compiling.
+     */
+    static final class Mirrors {
+        private Mirrors() {}
+
+        static AnnotationMirror find(final Element element, final String annotation) {
+            for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+                if (name(mirror).equals(annotation)) {
+                    return mirror;
+                }
+            }
+            return null;
+        }
+
+        static String name(final AnnotationMirror mirror) {
+            return ((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().toString();
+        }
+
+        static AnnotationValue value(
+                final javax.annotation.processing.ProcessingEnvironment env,
+                final AnnotationMirror mirror,
+                final String name) {
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e
+                    : env.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+                if (e.getKey().getSimpleName().contentEquals(name)) {
+                    return e.getValue();
+                }
+            }
+            return null;
+        }
+
+        static TypeMirror type(final AnnotationValue value) {
+            return (TypeMirror) value.getValue();
+        }
+
+        @SuppressWarnings("unchecked")
+        static List<? extends AnnotationValue> list(final AnnotationValue value) {
+            return (List<? extends AnnotationValue>) value.getValue();
+        }
+    }
+}
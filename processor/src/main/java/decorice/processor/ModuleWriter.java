@@ -0,0 +1,403 @@
+package decorice.processor;
+
+import decorice.processor.ChainDeclaration.Dependency;
+import decorice.processor.ChainDeclaration.Layer;
+import decorice.processor.DecoratorChainProcessor.Mirrors;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the module for the chains declared on one class. Each chain becomes
+ * a provider that calls the decorator constructors directly, innermost
+ * first. Chains with {@code @PassThrough} methods also get view classes that
+ * dispatch those methods around the layers that only forward them.
+ */
+final class ModuleWriter {
+
+    private static final String SUFFIX = "_DecoratorChains";
+
+    private final ProcessingEnvironment env;
+    private final TypeElement owner;
+    private final List<ChainDeclaration> chains;
+    private final StringBuilder out = new StringBuilder();
+    private boolean reflectiveQualifiers;
+
+    ModuleWriter(
+            final ProcessingEnvironment env,
+            final TypeElement owner,
+            final List<ChainDeclaration> chains) {
+        this.env = env;
+        this.owner = owner;
+        this.chains = chains;
+    }
+
+    String qualifiedName() {
+        final String p = packageName();
+        return p.isEmpty() ? simpleName() : p + "." + simpleName();
+    }
+
+    String source() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < chains.size(); i++) {
+            writeProvider(i, chains.get(i));
+        }
+        body.append(out);
+        out.setLength(0);
+
+        if (!packageName().isEmpty()) {
+            line(0, "package " + packageName() + ";");
+            line(0, "");
+        }
+        line(0, "/**");
+        line(0, " * Generated by decorice-processor from the chains declared on");
+        line(0, " * {@link " + owner.getQualifiedName() + "}. Do not edit.");
+        line(0, " */");
+        line(0, "public final class " + simpleName() + " extends com.google.inject.AbstractModule {");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "protected void configure() {");
+        for (int i = 0; i < chains.size(); i++) {
+            writeBinding(i, chains.get(i));
+        }
+        line(1, "}");
+        out.append(body);
+        if (reflectiveQualifiers) {
+            writeQualifierLookup();
+        }
+        line(0, "}");
+        return out.toString();
+    }
+
+    private void writeBinding(final int index, final ChainDeclaration chain) {
+        final String type = chain.bind.getQualifiedName() + ".class";
+        final String key;
+        if (chain.named != null) {
+            key = "com.google.inject.Key.get(" + type + ", com.google.inject.name.Names.named("
+                    + env.getElementUtils().getConstantExpression(chain.named) + "))";
+        } else if (chain.annotatedWith != null) {
+            key = "com.google.inject.Key.get(" + type + ", "
+                    + chain.annotatedWith.getQualifiedName() + ".class)";
+        } else {
+            key = type;
+        }
+        line(2, "bind(" + key + ")");
+        line(4, ".toProvider(new Chain" + index + "(binder()))"
+                + (chain.in == null ? ";" : ""));
+        if (chain.in != null) {
+            line(4, ".in(" + chain.in.getQualifiedName() + ".class);");
+        }
+    }
+
+    private void writeProvider(final int index, final ChainDeclaration chain) {
+        final String type = chain.bind.getQualifiedName().toString();
+        line(0, "");
+        line(1, "private static final class Chain" + index
+                + " implements com.google.inject.Provider<" + type + "> {");
+        line(2, "private final com.google.inject.Provider<? extends " + type + "> base;");
+        for (int l = 0; l < chain.decoratedBy.size(); l++) {
+            final Layer layer = chain.decoratedBy.get(l);
+            for (int p = 0; p < layer.parameters.size(); p++) {
+                final Dependency dependency = layer.parameters.get(p);
+                if (dependency != null) {
+                    line(2, "private final com.google.inject.Provider<"
+                            + boxed(dependency.type) + "> " + parameter(l, p) + ";");
+                }
+            }
+            if (layer.injectsMembers) {
+                line(2, "private final com.google.inject.MembersInjector<"
+                        + layer.decorator.getQualifiedName() + "> " + members(l) + ";");
+            }
+        }
+        line(0, "");
+        line(2, "Chain" + index + "(final com.google.inject.Binder binder) {");
+        line(3, "base = binder.getProvider(" + chain.to.getQualifiedName() + ".class);");
+        for (int l = 0; l < chain.decoratedBy.size(); l++) {
+            final Layer layer = chain.decoratedBy.get(l);
+            for (int p = 0; p < layer.parameters.size(); p++) {
+                final Dependency dependency = layer.parameters.get(p);
+                if (dependency != null) {
+                    line(3, parameter(l, p) + " = binder.getProvider("
+                            + key(layer, p, dependency) + ");");
+                }
+            }
+            if (layer.injectsMembers) {
+                line(3, members(l) + " = binder.getMembersInjector("
+                        + layer.decorator.getQualifiedName() + ".class);");
+            }
+        }
+        line(2, "}");
+        line(0, "");
+        line(2, "@Override");
+        line(2, "public " + type + " get() {");
+        if (chain.hasPassThrough()) {
+            writeDispatchingGet(index, chain);
+            return;
+        }
+        String decorated = "base.get()";
+        for (int l = chain.decoratedBy.size() - 1; l >= 0; l--) {
+            writeLayer(chain.decoratedBy.get(l), l, decorated);
+            decorated = "layer" + l;
+        }
+        line(3, "return " + decorated + ";");
+        line(2, "}");
+        line(1, "}");
+    }
+
+    /**
+     * Every layer, and the caller, is handed a view of what is beneath it
+     * that sends each method straight to the first layer that does more than
+     * forward it. Views that would only forward to the next layer are left
+     * out.
+     */
+    private void writeDispatchingGet(final int index, final ChainDeclaration chain) {
+        final int depth = chain.decoratedBy.size();
+        final List<String> views = new ArrayList<>();
+        line(3, "final " + chain.bind.getQualifiedName() + " layer" + depth + " = base.get();");
+        for (int l = depth - 1; l >= 0; l--) {
+            writeLayer(chain.decoratedBy.get(l), l, view(index, chain, l + 1, views));
+        }
+        line(3, "return " + view(index, chain, 0, views) + ";");
+        line(2, "}");
+        line(1, "}");
+        for (final String view : views) {
+            out.append(view);
+        }
+    }
+
+    private String view(
+            final int index,
+            final ChainDeclaration chain,
+            final int from,
+            final List<String> views) {
+        final Map<ExecutableElement, Integer> routes = new LinkedHashMap<>();
+        final Set<Integer> targets = new TreeSet<>();
+        for (final ExecutableElement method : chain.methods) {
+            int k = from;
+            while (k < chain.decoratedBy.size()
+                    && chain.decoratedBy.get(k).passThrough.contains(method)) {
+                k++;
+            }
+            routes.put(method, k);
+            targets.add(k);
+        }
+        if (targets.size() <= 1 && (targets.isEmpty() || targets.contains(from))) {
+            return "layer" + from;
+        }
+
+        final String name = "Chain" + index + "View" + from;
+        final StringBuilder fields = new StringBuilder();
+        final StringBuilder parameters = new StringBuilder();
+        final StringBuilder arguments = new StringBuilder();
+        for (final int k : targets) {
+            final String layerType = k == chain.decoratedBy.size()
+                    ? chain.bind.getQualifiedName().toString()
+                    : chain.decoratedBy.get(k).decorator.getQualifiedName().toString();
+            fields.append("        private final ").append(layerType)
+                    .append(" layer").append(k).append(";\n");
+            if (parameters.length() > 0) {
+                parameters.append(", ");
+                arguments.append(", ");
+            }
+            parameters.append("final ").append(layerType).append(" layer").append(k);
+            arguments.append("layer").append(k);
+        }
+
+        final StringBuilder view = new StringBuilder();
+        view.append("\n");
+        view.append("    private static final class ").append(name)
+                .append(" implements ").append(chain.bind.getQualifiedName()).append(" {\n");
+        view.append(fields);
+        view.append("\n");
+        view.append("        ").append(name).append("(").append(parameters).append(") {\n");
+        for (final int k : targets) {
+            view.append("            this.layer").append(k).append(" = layer").append(k).append(";\n");
+        }
+        view.append("        }\n");
+        for (final Map.Entry<ExecutableElement, Integer> route : routes.entrySet()) {
+            view.append("\n");
+            view.append("        @Override\n");
+            view.append("        ").append(forwarding(route.getKey(), "layer" + route.getValue()));
+        }
+        view.append("    }\n");
+        views.add(view.toString());
+        return "new " + name + "(" + arguments + ")";
+    }
+
+    private String forwarding(final ExecutableElement method, final String target) {
+        final StringBuilder signature = new StringBuilder("public ");
+        if (!method.getTypeParameters().isEmpty()) {
+            signature.append("<");
+            for (int i = 0; i < method.getTypeParameters().size(); i++) {
+                final TypeParameterElement parameter = method.getTypeParameters().get(i);
+                if (i > 0) {
+                    signature.append(", ");
+                }
+                signature.append(parameter.getSimpleName());
+                final List<? extends TypeMirror> bounds = parameter.getBounds();
+                if (!(bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object"))) {
+                    signature.append(" extends ");
+                    for (int b = 0; b < bounds.size(); b++) {
+                        signature.append(b > 0 ? " & " : "").append(bounds.get(b));
+                    }
+                }
+            }
+            signature.append("> ");
+        }
+        signature.append(method.getReturnType()).append(" ")
+                .append(method.getSimpleName()).append("(");
+        final StringBuilder arguments = new StringBuilder();
+        final List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                signature.append(", ");
+                arguments.append(", ");
+            }
+            String parameterType = parameters.get(i).asType().toString();
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                parameterType = parameterType.substring(0, parameterType.length() - 2) + "...";
+            }
+            signature.append("final ").append(parameterType).append(" p").append(i);
+            arguments.append("p").append(i);
+        }
+        signature.append(")");
+        for (int i = 0; i < method.getThrownTypes().size(); i++) {
+            signature.append(i == 0 ? " throws " : ", ").append(method.getThrownTypes().get(i));
+        }
+        final boolean returns = method.getReturnType().getKind() != TypeKind.VOID;
+        return signature + " {\n"
+                + "            " + (returns ? "return " : "") + target + "."
+                + method.getSimpleName() + "(" + arguments + ");\n"
+                + "        }\n";
+    }
+
+    private void writeLayer(final Layer layer, final int l, final String decorated) {
+        final String decorator = layer.decorator.getQualifiedName().toString();
+        final StringBuilder args = new StringBuilder();
+        for (int p = 0; p < layer.parameters.size(); p++) {
+            if (p > 0) {
+                args.append(", ");
+            }
+            args.append(p == layer.decoratedIndex ? decorated : parameter(l, p) + ".get()");
+        }
+        line(3, "final " + decorator + " layer" + l + " = new " + decorator + "(" + args + ");");
+        if (layer.injectsMembers) {
+            line(3, members(l) + ".injectMembers(layer" + l + ");");
+        }
+    }
+
+    private String key(final Layer layer, final int p, final Dependency dependency) {
+        final String type = typeLiteral(dependency.type);
+        if (dependency.qualifier == null) {
+            return "com.google.inject.Key.get(" + type + ")";
+        }
+        final String qualifier = Mirrors.name(dependency.qualifier);
+        if (qualifier.equals("com.google.inject.name.Named")
+                || qualifier.equals("javax.inject.Named")) {
+            final Object value = Mirrors.value(env, dependency.qualifier, "value").getValue();
+            return "com.google.inject.Key.get(" + type + ", com.google.inject.name.Names.named("
+                    + env.getElementUtils().getConstantExpression(value) + "))";
+        }
+        if (hasNoAttributes(dependency.qualifier)) {
+            return "com.google.inject.Key.get(" + type + ", " + qualifier + ".class)";
+        }
+        reflectiveQualifiers = true;
+        return "com.google.inject.Key.get(" + type + ", qualifier("
+                + layer.decorator.getQualifiedName() + ".class, " + p + "))";
+    }
+
+    private boolean hasNoAttributes(final AnnotationMirror qualifier) {
+        for (final Element e : qualifier.getAnnotationType().asElement().getEnclosedElements()) {
+            if (e.getKind() == ElementKind.METHOD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Qualifiers with attributes other than {@code @Named} are read back from
+     * the constructor once, when the module is configured.
+     */
+    private void writeQualifierLookup() {
+        line(0, "");
+        line(1, "private static java.lang.annotation.Annotation qualifier(");
+        line(3, "final Class<?> decorator, final int parameter) {");
+        line(2, "for (final java.lang.reflect.Constructor<?> c : decorator.getDeclaredConstructors()) {");
+        line(3, "if (c.isAnnotationPresent(javax.inject.Inject.class)");
+        line(5, "|| c.isAnnotationPresent(com.google.inject.Inject.class)) {");
+        line(4, "for (final java.lang.annotation.Annotation a : c.getParameterAnnotations()[parameter]) {");
+        line(5, "final Class<?> type = a.annotationType();");
+        line(5, "if (type.isAnnotationPresent(com.google.inject.BindingAnnotation.class)");
+        line(7, "|| type.isAnnotationPresent(javax.inject.Qualifier.class)) {");
+        line(6, "return a;");
+        line(5, "}");
+        line(4, "}");
+        line(3, "}");
+        line(2, "}");
+        line(2, "throw new IllegalStateException(\"no qualifier on parameter \" + parameter + \" of \" + decorator);");
+        line(1, "}");
+    }
+
+    private String typeLiteral(final TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED
+                && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return "new com.google.inject.TypeLiteral<" + type + ">() {}";
+        }
+        return env.getTypeUtils().erasure(boxedMirror(type)) + ".class";
+    }
+
+    private String boxed(final TypeMirror type) {
+        return boxedMirror(type).toString();
+    }
+
+    private TypeMirror boxedMirror(final TypeMirror type) {
+        return type.getKind().isPrimitive()
+                ? env.getTypeUtils().boxedClass(env.getTypeUtils().getPrimitiveType(type.getKind())).asType()
+                : type;
+    }
+
+    private static String parameter(final int layer, final int parameter) {
+        return "layer" + layer + "Parameter" + parameter;
+    }
+
+    private static String members(final int layer) {
+        return "layer" + layer + "Members";
+    }
+
+    private String packageName() {
+        return env.getElementUtils().getPackageOf(owner).getQualifiedName().toString();
+    }
+
+    private String simpleName() {
+        final StringBuilder name = new StringBuilder(owner.getSimpleName());
+        for (Element e = owner.getEnclosingElement();
+             e instanceof TypeElement;
+             e = e.getEnclosingElement()) {
+            name.insert(0, ((TypeElement) e).getSimpleName() + "_");
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private void line(final int indent, final String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+}
@@ -0,0 +1,274 @@
+package decorice.processor;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DecoratorChainProcessorTest {
+
+    private static final String FOO =
+            "package app;\n"
+            + "public interface Foo { String bar(); }\n";
+
+    private static final String FOO_IMPL =
+            "package app;\n"
+            + "public class FooImpl implements Foo {\n"
+            + "    public String bar() { return \"FooImpl\"; }\n"
+            + "}\n";
+
+    private static final String D1 =
+            "package app;\n"
+            + "import decorice.DecoratedBy;\n"
+            + "import javax.inject.Inject;\n"
+            + "import javax.inject.Named;\n"
+            + "class D1 implements Foo {\n"
+            + "    private final Foo decorated;\n"
+            + "    private final String tag;\n"
+            + "    @Inject D1(@Named(\"tag\") String tag, @DecoratedBy(D1.class) Foo decorated) {\n"
+            + "        this.decorated = decorated;\n"
+            + "        this.tag = tag;\n"
+            + "    }\n"
+            + "    public String bar() { return tag + \":\" + decorated.bar(); }\n"
+            + "}\n";
+
+    private static final String D2 =
+            "package app;\n"
+            + "import decorice.DecoratedBy;\n"
+            + "import javax.inject.Inject;\n"
+            + "public class D2 implements Foo {\n"
+            + "    private final Foo decorated;\n"
+            + "    @Inject public D2(@DecoratedBy(D2.class) Foo decorated) {\n"
+            + "        this.decorated = decorated;\n"
+            + "    }\n"
+            + "    public String bar() { return \"D2:\" + decorated.bar(); }\n"
+            + "}\n";
+
+    @Rule
+    public final TemporaryFolder output = new TemporaryFolder();
+
+    @Test
+    public void generatesModule() throws Exception {
+        final List<Diagnostic<? extends JavaFileObject>> errors = compile(
+                source("app.Foo", FOO),
+                source("app.FooImpl", FOO_IMPL),
+                source("app.D1", D1),
+                source("app.D2", D2),
+                source("app.Chains",
+                        "package app;\n"
+                        + "import decorice.DecoratorChain;\n"
+                        + "@DecoratorChain(bind = Foo.class, to = FooImpl.class,\n"
+                        + "        decoratedBy = {D2.class, D1.class})\n"
+                        + "@DecoratorChain(bind = Foo.class, named = \"singleton\", to = FooImpl.class,\n"
+                        + "        decoratedBy = D2.class, in = javax.inject.Singleton.class)\n"
+                        + "class Chains {}\n"));
+        assertThat(errors, empty());
+
+        final ClassLoader loader = new URLClassLoader(
+                new URL[] {output.getRoot().toURI().toURL()},
+                getClass().getClassLoader());
+        final Class<?> foo = loader.loadClass("app.Foo");
+        final Injector injector = Guice.createInjector(
+                (Module) loader.loadClass("app.Chains_DecoratorChains").newInstance(),
+                binder -> binder.bindConstant().annotatedWith(Names.named("tag")).to("T"));
+
+        assertThat(bar(injector.getInstance(foo)), equalTo("D2:T:FooImpl"));
+        final Key<?> singleton = Key.get(foo, Names.named("singleton"));
+        assertThat(bar(injector.getInstance(singleton)), equalTo("D2:FooImpl"));
+        assertThat(
+                injector.getInstance(singleton),
+                is(sameInstance(injector.getInstance(singleton))));
+    }
+
+    @Test
+    public void passThroughMethodsSkipForwardingLayers() throws Exception {
+        final String wideSource =
+                "package app;\n"
+                + "public interface Wide { String a(); String b(String... s) throws Exception; }\n";
+        final List<Diagnostic<? extends JavaFileObject>> errors = compile(
+                source("app.Wide", wideSource),
+                source("app.WideImpl",
+                        "package app;\n"
+                        + "public class WideImpl implements Wide {\n"
+                        + "    public String a() { return \"WideImpl\"; }\n"
+                        + "    public String b(String... s) { return \"WideImpl\" + s.length; }\n"
+                        + "}\n"),
+                source("app.Forwarding",
+                        "package app;\n"
+                        + "import decorice.PassThrough;\n"
+                        + "public abstract class Forwarding implements Wide {\n"
+                        + "    protected final Wide decorated;\n"
+                        + "    protected Forwarding(Wide decorated) { this.decorated = decorated; }\n"
+                        + "    @PassThrough public String a() { return \"skipped:\" + decorated.a(); }\n"
+                        + "    @PassThrough public String b(String... s) throws Exception {\n"
+                        + "        return \"skipped:\" + decorated.b(s);\n"
+                        + "    }\n"
+                        + "}\n"),
+                source("app.OnlyA",
+                        "package app;\n"
+                        + "import decorice.DecoratedBy;\n"
+                        + "import javax.inject.Inject;\n"
+                        + "public class OnlyA extends Forwarding {\n"
+                        + "    @Inject public OnlyA(@DecoratedBy(OnlyA.class) Wide decorated) {\n"
+                        + "        super(decorated);\n"
+                        + "    }\n"
+                        + "    @Override public String a() { return \"A:\" + decorated.a(); }\n"
+                        + "}\n"),
+                source("app.OnlyB",
+                        "package app;\n"
+                        + "import decorice.DecoratedBy;\n"
+                        + "import javax.inject.Inject;\n"
+                        + "public class OnlyB extends Forwarding {\n"
+                        + "    @Inject public OnlyB(@DecoratedBy(OnlyB.class) Wide decorated) {\n"
+                        + "        super(decorated);\n"
+                        + "    }\n"
+                        + "    @Override public String b(String... s) throws Exception {\n"
+                        + "        return \"B:\" + decorated.b(s);\n"
+                        + "    }\n"
+                        + "}\n"),
+                source("app.Chains",
+                        "package app;\n"
+                        + "import decorice.DecoratorChain;\n"
+                        + "@DecoratorChain(bind = Wide.class, to = WideImpl.class,\n"
+                        + "        decoratedBy = {OnlyB.class, OnlyA.class})\n"
+                        + "class Chains {}\n"));
+        assertThat(errors, empty());
+
+        final ClassLoader loader = new URLClassLoader(
+                new URL[] {output.getRoot().toURI().toURL()},
+                getClass().getClassLoader());
+        final Class<?> wideType = loader.loadClass("app.Wide");
+        final Object wide = Guice.createInjector(
+                (Module) loader.loadClass("app.Chains_DecoratorChains").newInstance())
+                .getInstance(wideType);
+
+        assertThat(
+                wideType.getMethod("a").invoke(wide),
+                equalTo((Object) "A:WideImpl"));
+        assertThat(
+                wideType.getMethod("b", String[].class).invoke(wide, (Object) new String[] {"x"}),
+                equalTo((Object) "B:WideImpl1"));
+    }
+
+    @Test
+    public void decoratorWithoutDecoratedByParameterFailsTheBuild() throws Exception {
+        final List<Diagnostic<? extends JavaFileObject>> errors = compile(
+                source("app.Foo", FOO),
+                source("app.FooImpl", FOO_IMPL),
+                source("app.D2", D2),
+                source("app.Plain",
+                        "package app;\n"
+                        + "import javax.inject.Inject;\n"
+                        + "public class Plain implements Foo {\n"
+                        + "    @Inject public Plain(Foo decorated) {}\n"
+                        + "    public String bar() { return \"Plain\"; }\n"
+                        + "}\n"),
+                source("app.Chains",
+                        "package app;\n"
+                        + "import decorice.DecoratorChain;\n"
+                        + "@DecoratorChain(bind = Foo.class, to = FooImpl.class,\n"
+                        + "        decoratedBy = {D2.class, Plain.class})\n"
+                        + "class Chains {}\n"));
+        assertThat(
+                messages(errors),
+                hasItem(containsString(
+                        "app.Plain has no Foo parameter annotated with @DecoratedBy(Plain.class)")));
+    }
+
+    @Test
+    public void decoratedByMustNameItsOwnClass() throws Exception {
+        final List<Diagnostic<? extends JavaFileObject>> errors = compile(
+                source("app.Foo", FOO),
+                source("app.D2", D2),
+                source("app.Copied",
+                        "package app;\n"
+                        + "import decorice.DecoratedBy;\n"
+                        + "import javax.inject.Inject;\n"
+                        + "public class Copied implements Foo {\n"
+                        + "    @Inject public Copied(@DecoratedBy(D2.class) Foo decorated) {}\n"
+                        + "    public String bar() { return \"Copied\"; }\n"
+                        + "}\n"));
+        assertThat(
+                messages(errors),
+                hasItem(containsString("must name Copied.class")));
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(
+            final JavaFileObject... sources) throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager files =
+                compiler.getStandardFileManager(diagnostics, null, null);
+        files.setLocation(
+                StandardLocation.CLASS_OUTPUT,
+                Collections.singletonList(output.getRoot()));
+        final List<File> classpath = new ArrayList<>();
+        for (final String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classpath.add(new File(entry));
+        }
+        files.setLocation(StandardLocation.CLASS_PATH, classpath);
+        final JavaCompiler.CompilationTask task = compiler.getTask(
+                null, files, diagnostics, null, null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new DecoratorChainProcessor()));
+        task.call();
+        final List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        for (final Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(d);
+            }
+        }
+        return errors;
+    }
+
+    private static List<String> messages(final List<Diagnostic<? extends JavaFileObject>> errors) {
+        final List<String> messages = new ArrayList<>();
+        for (final Diagnostic<? extends JavaFileObject> error : errors) {
+            messages.add(error.getMessage(null));
+        }
+        return messages;
+    }
+
+    private static String bar(final Object foo) throws Exception {
+        return (String) foo.getClass().getMethod("bar").invoke(foo);
+    }
+
+    private static JavaFileObject source(final String name, final String code) {
+        return new SimpleJavaFileObject(
+                URI.create("string:///" + name.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
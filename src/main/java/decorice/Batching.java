@@ -0,0 +1,181 @@
+package decorice;
+
+import com.google.inject.Binder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A layer that gathers concurrent calls of a single-item method into one
+ * call of a bulk method of the layer beneath, declared in
+ * {@code decoratedBy} with {@link DecoratorModule#layer(Batching)}:
+ *
+ * <pre>
+ * interface Store {
+ *     Item get(String id);
+ *     Map&lt;String, Item&gt; getAll(Collection&lt;String&gt; ids);
+ * }
+ *
+ * layer(Batching.of("get", "getAll").maximumBatchSize(100).maximumDelay(2, MILLISECONDS))
+ * </pre>
+ *
+ * <p>The single-item method takes one argument, the item. The bulk method
+ * takes a {@code List} or {@code Collection} of items, given in an
+ * {@code ArrayList}, or a {@code Set}, given in a {@code LinkedHashSet}, and
+ * returns either a {@code Map} from item to result, where a missing item
+ * gets {@code null}, or a {@code List} of results in the order of the items
+ * it was given. A batch is sent once it is full or once its first call has
+ * waited the maximum delay, by the caller that filled it or by that first
+ * caller; an exception of the bulk call is thrown to every caller of the
+ * batch.
+ *
+ * <p>Calls are only batched with calls made through the same instance of
+ * the layer; see "Built-in layers" in the README on scoping it.
+ */
+public final class Batching extends BuiltInLayer {
+
+    private static final int DEFAULT_MAXIMUM_BATCH_SIZE = 100;
+    private static final long DEFAULT_MAXIMUM_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final String single;
+    private final String bulk;
+    private int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+    private long maximumDelayNanos = DEFAULT_MAXIMUM_DELAY_NANOS;
+    private final BatchingStats stats = new BatchingStats();
+
+    private Batching(final String single, final String bulk) {
+        this.single = single;
+        this.bulk = bulk;
+    }
+
+    /**
+     * Batches the calls of the method named {@code single} into calls of the
+     * method named {@code bulk}.
+     */
+    public static Batching of(final String single, final String bulk) {
+        return new Batching(single, bulk);
+    }
+
+    /**
+     * 100 unless told otherwise.
+     */
+    public Batching maximumBatchSize(final int maximumBatchSize) {
+        if (maximumBatchSize <= 0) {
+            throw new IllegalArgumentException("Not positive: " + maximumBatchSize);
+        }
+        this.maximumBatchSize = maximumBatchSize;
+        return this;
+    }
+
+    /**
+     * How long the first call of a batch waits for others, 2ms unless told
+     * otherwise.
+     */
+    public Batching maximumDelay(final long delay, final TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative: " + delay);
+        }
+        this.maximumDelayNanos = unit.toNanos(delay);
+        return this;
+    }
+
+    /**
+     * Counted over every instance of the layer.
+     */
+    public BatchingStats stats() {
+        return stats;
+    }
+
+    @Override
+    boolean validate(final Binder binder, final Class<?> type) {
+        boolean valid = true;
+        final Method singleMethod = method(type, single);
+        if (singleMethod == null || singleMethod.getReturnType() == void.class) {
+            binder.addError(
+                    "%s has no method named %s that takes one item and returns a value",
+                    type.getName(),
+                    single);
+            valid = false;
+        }
+        final Method bulkMethod = method(type, bulk);
+        if (bulkMethod == null
+                || !(isList(bulkMethod.getParameterTypes()[0])
+                        || isSet(bulkMethod.getParameterTypes()[0]))
+                || !(Map.class.isAssignableFrom(bulkMethod.getReturnType())
+                        || List.class.isAssignableFrom(bulkMethod.getReturnType()))) {
+            binder.addError(
+                    "%s has no method named %s that takes a List, Collection or Set "
+                            + "of items and returns a Map or a List%s",
+                    type.getName(),
+                    bulk,
+                    bulkMethod == null ? "" : "; it takes a "
+                            + bulkMethod.getParameterTypes()[0].getName()
+                            + " and returns a " + bulkMethod.getReturnType().getName());
+            valid = false;
+        } else if (List.class.isAssignableFrom(bulkMethod.getReturnType())
+                && !isList(bulkMethod.getParameterTypes()[0])) {
+            binder.addError(
+                    "%s.%s returns a List, so it must take a List or a Collection "
+                            + "for its results to be matched by position",
+                    type.getName(),
+                    bulk);
+            valid = false;
+        }
+        return valid;
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final Method singleMethod = method(type, single);
+        final Method bulkMethod = method(type, bulk);
+        final boolean set = !isList(bulkMethod.getParameterTypes()[0]);
+        return decorated -> Proxies.of(type, new BatchingLayer(
+                decorated,
+                singleMethod,
+                bulkMethod,
+                items -> set ? new LinkedHashSet<>(items) : new ArrayList<>(items),
+                maximumBatchSize,
+                maximumDelayNanos,
+                stats));
+    }
+
+    /**
+     * The method of {@code type} with this name and one parameter.
+     */
+    private static Method method(final Class<?> type, final String name) {
+        for (final Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == 1) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the bulk method takes its items in an {@code ArrayList}.
+     */
+    private static boolean isList(final Class<?> parameter) {
+        return parameter == List.class || parameter == Collection.class;
+    }
+
+    /**
+     * Whether the bulk method takes its items in a {@code LinkedHashSet}.
+     */
+    private static boolean isSet(final Class<?> parameter) {
+        return parameter == Set.class;
+    }
+
+    @Override
+    public String toString() {
+        return "Batching[" + single + " into " + bulk
+                + ", maximumBatchSize=" + maximumBatchSize
+                + ", maximumDelay=" + maximumDelayNanos + "ns]";
+    }
+}
@@ -0,0 +1,154 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Gathers the single-item calls of a chain into bulk calls. The first call
+ * of a batch waits for the batch to fill, at most the maximum delay; the
+ * caller that closes a batch, by filling it or by running out of time,
+ * makes the bulk call on its own thread and completes the calls of the
+ * batch.
+ */
+final class BatchingLayer implements InvocationHandler {
+
+    private static final class Batch {
+        final List<Object> items = new ArrayList<>();
+        final List<CompletableFuture<Object>> results = new ArrayList<>();
+        boolean closed;
+    }
+
+    private final Object decorated;
+    private final Method single;
+    private final Method bulk;
+    private final Function<List<Object>, Collection<Object>> bulkArgument;
+    private final int maximumBatchSize;
+    private final long maximumDelayNanos;
+    private final BatchingStats stats;
+
+    /**
+     * Guarded by {@code this}.
+     */
+    private Batch open;
+
+    BatchingLayer(
+            final Object decorated,
+            final Method single,
+            final Method bulk,
+            final Function<List<Object>, Collection<Object>> bulkArgument,
+            final int maximumBatchSize,
+            final long maximumDelayNanos,
+            final BatchingStats stats) {
+        this.decorated = decorated;
+        this.single = single;
+        this.bulk = bulk;
+        this.bulkArgument = bulkArgument;
+        this.maximumBatchSize = maximumBatchSize;
+        this.maximumDelayNanos = maximumDelayNanos;
+        this.stats = stats;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (!method.equals(single)) {
+            return Proxies.call(decorated, method, args);
+        }
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final Batch batch;
+        final boolean first;
+        boolean send = false;
+        synchronized (this) {
+            if (open == null) {
+                open = new Batch();
+            }
+            batch = open;
+            first = batch.items.isEmpty();
+            batch.items.add(args[0]);
+            batch.results.add(result);
+            if (batch.items.size() >= maximumBatchSize) {
+                send = close(batch);
+                notifyAll();
+            } else if (first) {
+                send = awaitFull(batch);
+            }
+        }
+        if (send) {
+            send(batch);
+        }
+        try {
+            return result.join();
+        } catch (final CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns whether the caller closed the batch and has to send it.
+     */
+    private boolean awaitFull(final Batch batch) {
+        final long deadline = System.nanoTime() + maximumDelayNanos;
+        long remaining = maximumDelayNanos;
+        while (!batch.closed && remaining > 0) {
+            try {
+                wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        return close(batch);
+    }
+
+    private boolean close(final Batch batch) {
+        if (batch.closed) {
+            return false;
+        }
+        batch.closed = true;
+        if (open == batch) {
+            open = null;
+        }
+        return true;
+    }
+
+    private void send(final Batch batch) {
+        final long start = System.nanoTime();
+        final Object results;
+        try {
+            results = Proxies.call(decorated, bulk, new Object[] {bulkArgument.apply(batch.items)});
+        } catch (final Throwable e) {
+            for (final CompletableFuture<Object> result : batch.results) {
+                result.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            stats.record(batch.items.size(), System.nanoTime() - start);
+        }
+        if (results instanceof Map) {
+            final Map<?, ?> byItem = (Map<?, ?>) results;
+            for (int i = 0; i < batch.items.size(); i++) {
+                batch.results.get(i).complete(byItem.get(batch.items.get(i)));
+            }
+        } else if (results instanceof List && ((List<?>) results).size() == batch.items.size()) {
+            final List<?> byPosition = (List<?>) results;
+            for (int i = 0; i < batch.items.size(); i++) {
+                batch.results.get(i).complete(byPosition.get(i));
+            }
+        } else {
+            final IllegalStateException e = new IllegalStateException(
+                    bulk + " returned " + (results == null ? "null" : "a result of another size")
+                            + " for " + batch.items.size() + " items");
+            for (final CompletableFuture<Object> result : batch.results) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package decorice;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The batches a batching layer has sent, read live.
+ */
+public final class BatchingStats {
+
+    final LongAdder batches = new LongAdder();
+    final LongAdder calls = new LongAdder();
+    final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+    final LatencyHistogram bulkTime = new LatencyHistogram();
+
+    BatchingStats() {
+    }
+
+    void record(final int size, final long nanos) {
+        batches.increment();
+        calls.add(size);
+        largestBatch.accumulate(size);
+        bulkTime.record(nanos);
+    }
+
+    /**
+     * The bulk calls made.
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * The single-item calls answered by them.
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long largestBatch() {
+        return largestBatch.get();
+    }
+
+    public double meanBatchSize() {
+        final long batches = batches();
+        return batches == 0 ? 0 : (double) calls() / batches;
+    }
+
+    /**
+     * How long the bulk calls took.
+     */
+    public LatencyDistribution bulkTime() {
+        return bulkTime.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "batches=" + batches() + " calls=" + calls()
+                + " largestBatch=" + largestBatch() + " bulkTime[" + bulkTime() + "]";
+    }
+}
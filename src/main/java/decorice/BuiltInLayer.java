@@ -0,0 +1,79 @@
+package decorice;
+
+import com.google.inject.Binder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A layer decorice provides itself rather than a decorator class: a dynamic
+ * proxy declared in {@code decoratedBy} through
+ * {@link DecoratorModule#layer}. Built-in layers can only decorate
+ * interfaces.
+ *
+ * <p>Layers that keep state across calls keep it in each instance of the
+ * layer, so the layer, or a layer or the chain above it, is normally scoped.
+ * The public layers say what they keep, and point to the README for this.
+ */
+abstract class BuiltInLayer {
+
+    /**
+     * Checks the layer against the type it decorates, reporting any problem
+     * on the binder. The layer is only built when this returns true.
+     */
+    boolean validate(final Binder binder, final Class<?> type) {
+        return true;
+    }
+
+    /**
+     * Returns what builds the layer around the instance it decorates, once
+     * per chain binding.
+     */
+    abstract Function<Object, Object> layer(Binder binder, Class<?> type);
+
+    /**
+     * The methods of {@code type} with one of these names, or all of them
+     * when there are none, that return a value.
+     */
+    static List<Method> methodsReturningValues(final Class<?> type, final Set<String> names) {
+        final List<Method> methods = new ArrayList<>();
+        for (final Method method : type.getMethods()) {
+            if (method.getReturnType() != void.class
+                    && (names.isEmpty() || names.contains(method.getName()))) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Reports the names that match no method of {@code type} returning a
+     * value, and returns whether there were none.
+     */
+    static boolean checkMethodsReturnValues(
+            final Binder binder,
+            final Class<?> type,
+            final Set<String> names,
+            final String purpose) {
+        boolean valid = true;
+        for (final String name : names) {
+            boolean found = false;
+            for (final Method method : type.getMethods()) {
+                found |= method.getName().equals(name)
+                        && method.getReturnType() != void.class;
+            }
+            if (!found) {
+                binder.addError(
+                        "%s has no method named %s that returns a value to %s",
+                        type.getName(),
+                        name,
+                        purpose);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+}
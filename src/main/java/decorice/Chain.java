@@ -0,0 +1,741 @@
+package decorice;
+
+import com.google.inject.Binder;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.InjectionPoint;
+import decorice.DecoratorModule.Layer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * One chain declared on a {@link DecoratorModule}: what it is bound to, how,
+ * and the bindings it takes to get there.
+ *
+ * <p>Layers are numbered from the outermost decorator, 0, to the base,
+ * {@code decorators.size()}. Layer {@code i} is reached through its
+ * <em>edge</em> key: the target key for layer 0 and
+ * {@code @DecoratedBy(decorator i - 1)} for the others.
+ */
+@SuppressWarnings("unchecked")
+final class Chain {
+
+    private static final String LINKED = "linked";
+    private static final String FUSED = "fused";
+
+    /**
+     * A binding a chain needs. Chains may need the same inner binding; those
+     * are emitted once as long as their definitions agree.
+     */
+    static final class BindingSpec {
+        final Key<?> key;
+        final List<Object> definition;
+        final Chain chain;
+        final Consumer<Binder> emitter;
+
+        private BindingSpec(
+                final Key<?> key,
+                final List<Object> definition,
+                final Chain chain,
+                final Consumer<Binder> emitter) {
+            this.key = key;
+            this.definition = definition;
+            this.chain = chain;
+            this.emitter = emitter;
+        }
+    }
+
+    final Object source;
+    Key target;
+    Layer base;
+    /**
+     * What the key of the base is bound to when the chain binds its base
+     * itself, to an instance or a provider; {@code null} otherwise.
+     */
+    Consumer<com.google.inject.binder.LinkedBindingBuilder<Object>> baseTarget;
+    List<Layer> decorators;
+    Scoping scoping = Scoping.UNSCOPED;
+    boolean fused;
+    boolean instrumented;
+    boolean recorded;
+    /**
+     * One call in how many of each layer a recorded chain emits an event
+     * for, or 0 for none.
+     */
+    int recordedCalls;
+    boolean switchable;
+    /**
+     * In nanoseconds; 0 for none.
+     */
+    long latencyBudget;
+    /**
+     * Whether eager singletons are left to {@link ChainWarmUp}.
+     */
+    boolean warmedUp;
+    /**
+     * The module whose every binding of the target type the chain
+     * decorates, for a chain declared with
+     * {@link DecoratorModule#decorateEach}; such a chain has no base.
+     */
+    Module contributions;
+
+    private ChainMetrics metrics;
+    private RecordedLayer.Recording recording;
+    private Map<List<Object>, Key<?>> suffixes;
+
+    Chain(final Object source, final Key target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    boolean validate(final Binder binder) {
+        if (contributions != null) {
+            return validateEach(binder);
+        }
+        if (base == null || decorators == null) {
+            binder.addError(
+                    "The chain for %s is missing its %s",
+                    target,
+                    base == null ? "base (to)" : "decorators (decoratedBy)");
+            return false;
+        }
+        boolean valid = true;
+        for (final Layer layer : decorators) {
+            if (layer.decorator == null && layer.builtIn == null) {
+                binder.addError(
+                        "Decorators are bound by class; %s can only be the base of a chain",
+                        layer.key);
+                valid = false;
+            }
+            if (layer.builtIn != null) {
+                if (type().isInterface()) {
+                    valid &= layer.builtIn.validate(binder, type());
+                } else {
+                    binder.addError(
+                            "%s can only decorate an interface: %s",
+                            layer,
+                            target);
+                    valid = false;
+                }
+            }
+        }
+        if (base.builtIn != null) {
+            binder.addError("%s cannot be the base of a chain: %s", base, target);
+            valid = false;
+        }
+        if (scoping.isScoped() && decorators.get(0).scoping.isScoped()) {
+            binder.addError(
+                    "The outermost layer of the %s chain is scoped twice: "
+                            + "scope either the layer or the chain",
+                    target);
+            valid = false;
+        }
+        if (instrumented && !type().isInterface()) {
+            binder.addError(
+                    "Only chains bound to an interface can be instrumented: %s",
+                    target);
+            valid = false;
+        }
+        if (recordedCalls < 0) {
+            binder.addError(
+                    "One call in %s cannot be recorded: %s",
+                    recordedCalls,
+                    target);
+            valid = false;
+        }
+        if (switchable && !type().isInterface()) {
+            binder.addError(
+                    "Only chains bound to an interface can be switchable: %s",
+                    target);
+            valid = false;
+        }
+        if (switchable) {
+            for (final Layer layer : decorators) {
+                if (layer.scoping.isScoped()) {
+                    binder.addError(
+                            "The layers of the switchable %s chain cannot be scoped on "
+                                    + "their own: scope the chain or its base",
+                            target);
+                    valid = false;
+                    break;
+                }
+            }
+        }
+        final List<Class<?>> optional = optionalLayers();
+        if (latencyBudget == 0 && !optional.isEmpty()) {
+            binder.addError(
+                    "Only chains with a latency budget can have optional layers: %s",
+                    target);
+            valid = false;
+        }
+        if (latencyBudget > 0 && optional.isEmpty()) {
+            binder.addError(
+                    "The %s chain has a latency budget but no optional layer to route around",
+                    target);
+            valid = false;
+        }
+        if (hasLazyLayer() && !type().isInterface()) {
+            binder.addError(
+                    "Only chains bound to an interface can have lazy layers: %s",
+                    target);
+            valid = false;
+        }
+        return valid;
+    }
+
+    private boolean validateEach(final Binder binder) {
+        if (decorators == null) {
+            binder.addError("The chain for each %s is missing its decorators", target);
+            return false;
+        }
+        boolean valid = true;
+        for (final Layer layer : decorators) {
+            if (layer.decorator == null && layer.builtIn == null) {
+                binder.addError(
+                        "Decorators are bound by class; %s can only be the base of a chain",
+                        layer.key);
+                valid = false;
+            } else if (layer.scoping.isScoped() || layer.lazy || layer.optional) {
+                binder.addError(
+                        "The layers decorating each %s cannot be scoped, lazy or optional on "
+                                + "their own: scope the chain or the elements",
+                        target);
+                valid = false;
+            } else if (layer.builtIn != null && !type().isInterface()) {
+                binder.addError("%s can only decorate an interface: %s", layer, target);
+                valid = false;
+            } else if (layer.builtIn != null) {
+                valid &= layer.builtIn.validate(binder, type());
+            }
+        }
+        if (instrumented || recorded || switchable
+                || scoping == Scoping.EAGER_SINGLETON) {
+            binder.addError(
+                    "The chain for each %s cannot be instrumented, recorded, switchable or "
+                            + "eager: decorate the elements of a single binding instead",
+                    target);
+            valid = false;
+        }
+        return valid;
+    }
+
+    /**
+     * @param factories shared by the chains of a module so that each
+     *                  decorator constructor is resolved once
+     * @param suffixes  the trie of the scoped suffixes the chains of a
+     *                  module share, or {@code null} for none
+     */
+    List<BindingSpec> plan(
+            final Map<List<Class<?>>, LayerFactory> factories,
+            final Map<List<Object>, Key<?>> suffixes) {
+        if (contributions != null) {
+            return planEach(factories);
+        }
+        metrics = instrumented ? new ChainMetrics(target, layerNames()) : null;
+        recording = recorded && RecordedLayer.AVAILABLE
+                ? new RecordedLayer.Recording(target, layerNames(), layerKinds(), recordedCalls)
+                : null;
+        this.suffixes = suffixes;
+        final List<BindingSpec> specs = switchable
+                ? planSwitchable(factories)
+                : fused ? planFused(factories) : planLinked();
+        if (baseTarget != null) {
+            specs.add(new BindingSpec(
+                    base.key,
+                    Collections.singletonList(this),
+                    this,
+                    b -> baseTarget.accept(b.bind(base.key))));
+        }
+        final Key<Chain> key = Key.get(Chain.class, Internals.named(toString()));
+        specs.add(new BindingSpec(
+                key,
+                Collections.singletonList(this),
+                this,
+                b -> b.bind(key).toInstance(this)));
+        if (metrics != null) {
+            final ChainMetrics chainMetrics = metrics;
+            specs.add(new BindingSpec(
+                    ChainMetrics.key(target),
+                    Collections.singletonList(this),
+                    this,
+                    b -> {
+                        b.bind(ChainMetrics.key(target)).toInstance(chainMetrics);
+                        b.requestInjection(new ChainMetricsExporter(chainMetrics));
+                    }));
+        }
+        return specs;
+    }
+
+    /**
+     * Installs the contributions with each binding of the target type bound
+     * to the same layers, which are resolved once.
+     */
+    private List<BindingSpec> planEach(
+            final Map<List<Class<?>>, LayerFactory> factories) {
+        final Key key = Key.get(target.getTypeLiteral(), Internals.named("each of " + this));
+        final List<BindingSpec> specs = new ArrayList<>();
+        specs.add(new BindingSpec(key, Collections.singletonList(this), this, b -> {
+            final List<Function<Object, Object>> layers = new ArrayList<>();
+            for (int i = decorators.size() - 1; i >= 0; i--) {
+                final Function<Object, Object> layer = layer(factories, b, i);
+                if (layer == null) {
+                    return;
+                }
+                layers.add(layer);
+            }
+            EachElement.install(b, contributions, target.getTypeLiteral(), layers, scoping);
+        }));
+        return specs;
+    }
+
+    private List<BindingSpec> planLinked() {
+        final List<BindingSpec> specs = new ArrayList<>();
+        for (int i = 0; i <= decorators.size(); i++) {
+            specs.addAll(linked(i));
+        }
+        return specs;
+    }
+
+    /**
+     * Scoped layers are bound under their edge key so that they are shared;
+     * unscoped ones are built inline by the provider of the nearest binding
+     * above them.
+     */
+    private List<BindingSpec> planFused(
+            final Map<List<Class<?>>, LayerFactory> factories) {
+        final List<BindingSpec> specs = new ArrayList<>();
+        final int depth = decorators.size();
+        Key below = base.key;
+        boolean belowIsBase = true;
+        if (base.scoping.isScoped()) {
+            specs.addAll(linked(depth));
+            below = edge(depth);
+            belowIsBase = false;
+        }
+        List<Integer> run = new ArrayList<>();
+        for (int i = depth - 1; i >= 0; i--) {
+            run.add(i);
+            if (i == 0 || layer(i).scoping.isScoped()) {
+                final Key shared = sharedKey(i);
+                specs.add(fused(
+                        factories,
+                        below,
+                        belowIsBase,
+                        run,
+                        shared != null ? shared : edge(i)));
+                if (shared != null) {
+                    specs.add(link(i, shared));
+                }
+                below = edge(i);
+                belowIsBase = false;
+                run = new ArrayList<>();
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * Binds the target to the front of the chain, which composes the layers
+     * itself, and the switch that turns them on and off.
+     */
+    private List<BindingSpec> planSwitchable(
+            final Map<List<Class<?>>, LayerFactory> factories) {
+        final List<BindingSpec> specs = new ArrayList<>();
+        final int depth = decorators.size();
+        final Key below;
+        if (base.scoping.isScoped()) {
+            specs.addAll(linked(depth));
+            below = edge(depth);
+        } else {
+            below = base.key;
+        }
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final Layer layer : decorators) {
+            classes.add(layer.kind());
+        }
+        final ChainSwitch chainSwitch = new ChainSwitch(target, classes);
+        final Key<ChainSwitch> switchKey = ChainSwitch.key(target);
+        specs.add(new BindingSpec(
+                switchKey,
+                Collections.singletonList(this),
+                this,
+                b -> b.bind(switchKey).toInstance(chainSwitch)));
+        specs.add(new BindingSpec(target, Collections.singletonList(this), this, b -> {
+            Provider baseProvider = b.getProvider(below);
+            if (below == base.key) {
+                baseProvider = around(depth, baseProvider);
+            }
+            final List<Function<Object, Object>> layers = new ArrayList<>();
+            for (int i = 0; i < depth; i++) {
+                final int index = i;
+                final Function<Object, Object> layer = layer(factories, b, i);
+                if (layer == null) {
+                    return;
+                }
+                layers.add(instance -> around(index, () -> layer.apply(instance)).get());
+            }
+            scoping(0).applyTo(b.bind(target).toProvider(
+                    new SwitchableChain(
+                            type(),
+                            baseProvider,
+                            layers,
+                            chainSwitch,
+                            latencyBudget > 0
+                                    ? new LatencyBudget(
+                                            latencyBudget,
+                                            chainSwitch,
+                                            optionalLayers())
+                                    : null,
+                            recording)));
+        }));
+        return specs;
+    }
+
+    private List<BindingSpec> linked(final int i) {
+        final Key shared = sharedKey(i);
+        if (shared == null) {
+            return linked(i, edge(i));
+        }
+        final List<BindingSpec> specs = new ArrayList<>(linked(i, shared));
+        specs.add(link(i, shared));
+        return specs;
+    }
+
+    /**
+     * Binds {@code edge} to layer {@code i}; through an undecorated binding
+     * of the layer when something has to stand in front of it.
+     */
+    private List<BindingSpec> linked(final int i, final Key edge) {
+        final Layer layer = layer(i);
+        final Scoping scoping = scoping(i);
+        if (layer.builtIn != null) {
+            return Collections.singletonList(new BindingSpec(
+                    edge,
+                    Collections.singletonList(this),
+                    this,
+                    b -> {
+                        final Function<Object, Object> builtIn = layer.builtIn.layer(b, type());
+                        final Provider below = b.getProvider(edge(i + 1));
+                        scoping.applyTo(b.bind(edge).toProvider(
+                                around(i, () -> builtIn.apply(below.get()))));
+                    }));
+        }
+        final UnaryOperator<Provider> around = around(i);
+        if (around == null) {
+            return Collections.singletonList(new BindingSpec(
+                    edge,
+                    i == 0
+                            ? Collections.singletonList(this)
+                            : Arrays.asList(LINKED, layer.key, scoping),
+                    this,
+                    b -> scoping.applyTo(b.bind(edge).to(layer.key))));
+        }
+        final Key undecorated = Key.get(
+                target.getTypeLiteral(),
+                Internals.named(target + " layer " + i));
+        return Arrays.asList(
+                new BindingSpec(
+                        undecorated,
+                        Collections.singletonList(this),
+                        this,
+                        b -> b.bind(undecorated).to(layer.key)),
+                new BindingSpec(
+                        edge,
+                        Collections.singletonList(this),
+                        this,
+                        b -> scoping.applyTo(b.bind(edge).toProvider(
+                                around.apply(b.getProvider(undecorated))))));
+    }
+
+    /**
+     * Links the edge of layer {@code i} to the binding of its suffix.
+     */
+    private BindingSpec link(final int i, final Key shared) {
+        final Key edge = edge(i);
+        return new BindingSpec(
+                edge,
+                Arrays.asList(LINKED, shared, Scoping.UNSCOPED),
+                this,
+                b -> b.bind(edge).to(shared));
+    }
+
+    /**
+     * @param run  the layers built by the binding, innermost first
+     * @param edge the key the binding is bound under
+     */
+    private BindingSpec fused(
+            final Map<List<Class<?>>, LayerFactory> factories,
+            final Key below,
+            final boolean belowIsBase,
+            final List<Integer> run,
+            final Key edge) {
+        final int top = run.get(run.size() - 1);
+        final Scoping scoping = scoping(top);
+        final List<Object> definition = top == 0 || instrumented || recording != null
+                || hasLazyLayer(run) || belowIsBase && base.lazy
+                ? Collections.singletonList(this)
+                : Arrays.asList(FUSED, decoratorsOf(run), below, scoping);
+        return new BindingSpec(edge, definition, this, b -> {
+            Provider provider = b.getProvider(below);
+            if (belowIsBase) {
+                provider = around(decorators.size(), provider);
+            }
+            for (final int i : run) {
+                final Function<Object, Object> layer = layer(factories, b, i);
+                if (layer == null) {
+                    return;
+                }
+                provider = around(i, new LayerProvider(layer, provider));
+            }
+            scoping.applyTo(b.bind(edge).toProvider(provider));
+        });
+    }
+
+    /**
+     * Whether the chain binds the edge of layer {@code i}, rather than
+     * building the layer inline in the binding of a layer above it.
+     */
+    boolean bindsEdge(final int i) {
+        return i == 0 || !(fused || switchable) || layer(i).scoping.isScoped()
+                && (fused || i == decorators.size());
+    }
+
+    /**
+     * The edges bound as eager singletons.
+     */
+    List<Key<?>> eagerKeys() {
+        final List<Key<?>> keys = new ArrayList<>();
+        for (int i = 0; i <= decorators.size(); i++) {
+            if (declaredScoping(i) == Scoping.EAGER_SINGLETON) {
+                keys.add(edge(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The keys each layer is built from, by edge: the layer beneath and the
+     * other dependencies of the decorator.
+     */
+    Map<Key<?>, Collection<Key<?>>> dependencies() {
+        final Map<Key<?>, Collection<Key<?>>> dependencies = new HashMap<>();
+        for (int i = 0; i < decorators.size(); i++) {
+            final Class<?> decorator = decorators.get(i).decorator;
+            if (decorator == null) {
+                dependencies.put(edge(i), Collections.<Key<?>>singletonList(edge(i + 1)));
+                continue;
+            }
+            final Set<Key<?>> keys = new HashSet<>();
+            try {
+                for (final Dependency<?> dependency
+                        : InjectionPoint.forConstructorOf(decorator).getDependencies()) {
+                    keys.add(dependency.getKey());
+                }
+                for (final InjectionPoint member
+                        : InjectionPoint.forInstanceMethodsAndFields(decorator)) {
+                    for (final Dependency<?> dependency : member.getDependencies()) {
+                        keys.add(dependency.getKey());
+                    }
+                }
+            } catch (final ConfigurationException e) {
+                // reported when the injector was created
+            }
+            dependencies.put(edge(i), keys);
+        }
+        dependencies.put(
+                edge(decorators.size()),
+                Collections.<Key<?>>singletonList(base.key));
+        return dependencies;
+    }
+
+    /**
+     * The key the scoped layer {@code i} and the layers beneath it are bound
+     * under once for every chain that ends in the same layers, or
+     * {@code null} when the layer is bound under its edge. Each node of the
+     * trie stands for a layer, its scope and the node beneath it, down to
+     * the base; layers that belong to their chain, built-in, lazy,
+     * instrumented or recorded, are never shared.
+     */
+    private Key sharedKey(final int i) {
+        if (suffixes == null || i == 0 || !scoping(i).isScoped() || instrumented
+                || recording != null) {
+            return null;
+        }
+        for (int j = i; j <= decorators.size(); j++) {
+            if (layer(j).builtIn != null || layer(j).lazy) {
+                return null;
+            }
+        }
+        return suffixes.computeIfAbsent(
+                node(i),
+                node -> Key.get(
+                        target.getTypeLiteral(),
+                        Internals.named(target.getTypeLiteral() + " suffix " + suffixes.size())));
+    }
+
+    private List<Object> node(final int i) {
+        final Layer layer = layer(i);
+        return Arrays.asList(
+                i < decorators.size() && (fused || switchable) ? FUSED : LINKED,
+                layer.decorator != null ? layer.decorator : layer.key,
+                scoping(i),
+                i < decorators.size() ? node(i + 1) : target.getTypeLiteral());
+    }
+
+    /**
+     * What builds layer {@code i} around the instance beneath it, or
+     * {@code null} after reporting why it cannot be built.
+     */
+    private Function<Object, Object> layer(
+            final Map<List<Class<?>>, LayerFactory> factories,
+            final Binder binder,
+            final int i) {
+        final Layer layer = layer(i);
+        if (layer.builtIn != null) {
+            return layer.builtIn.layer(binder, type());
+        }
+        final List<Class<?>> id = Arrays.asList(type(), layer.decorator);
+        if (!factories.containsKey(id)) {
+            factories.put(id, LayerFactory.of(binder, type(), layer.decorator));
+        }
+        final LayerFactory factory = factories.get(id);
+        return factory == null ? null : factory::create;
+    }
+
+    /**
+     * What stands in front of layer {@code i}, or {@code null} for nothing.
+     */
+    private UnaryOperator<Provider> around(final int i) {
+        final boolean lazy = layer(i).lazy;
+        if (metrics == null && recording == null && !lazy) {
+            return null;
+        }
+        final LayerMetrics layerMetrics = metrics == null ? null : metrics.layer(i);
+        return p -> {
+            Provider provider = p;
+            if (layerMetrics != null) {
+                provider = InstrumentedLayer.around(type(), provider, layerMetrics);
+            }
+            if (recording != null) {
+                provider = RecordedLayer.around(type(), provider, recording, i);
+            }
+            if (lazy) {
+                provider = LazyLayer.around(type(), provider);
+            }
+            return provider;
+        };
+    }
+
+    private Provider around(final int i, final Provider layer) {
+        final UnaryOperator<Provider> around = around(i);
+        return around == null ? layer : around.apply(layer);
+    }
+
+    private List<String> layerNames() {
+        final List<String> names = new ArrayList<>();
+        for (final Layer layer : decorators) {
+            names.add(layer.toString());
+        }
+        names.add(base.key.toString());
+        return names;
+    }
+
+    private List<Class<?>> layerKinds() {
+        final List<Class<?>> kinds = new ArrayList<>();
+        for (final Layer layer : decorators) {
+            kinds.add(layer.kind());
+        }
+        kinds.add(null);
+        return kinds;
+    }
+
+    private List<Class<?>> optionalLayers() {
+        final List<Class<?>> optional = new ArrayList<>();
+        for (final Layer layer : decorators) {
+            if (layer.optional) {
+                optional.add(layer.kind());
+            }
+        }
+        return optional;
+    }
+
+    private boolean hasLazyLayer() {
+        for (final Layer layer : decorators) {
+            if (layer.lazy) {
+                return true;
+            }
+        }
+        return base.lazy;
+    }
+
+    private boolean hasLazyLayer(final List<Integer> run) {
+        for (final int i : run) {
+            if (layer(i).lazy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Class<?>> decoratorsOf(final List<Integer> run) {
+        final List<Class<?>> classes = new ArrayList<>(run.size());
+        for (final int i : run) {
+            classes.add(layer(i).kind());
+        }
+        return classes;
+    }
+
+    Layer layer(final int i) {
+        return i < decorators.size() ? decorators.get(i) : base;
+    }
+
+    private Scoping scoping(final int i) {
+        final Scoping declared = declaredScoping(i);
+        return warmedUp && declared == Scoping.EAGER_SINGLETON
+                ? Scoping.in(DecoriceScopes.CONCURRENT_SINGLETON)
+                : declared;
+    }
+
+    private Scoping declaredScoping(final int i) {
+        return i == 0 && scoping.isScoped() ? scoping : layer(i).scoping;
+    }
+
+    /**
+     * The layers beneath a built-in layer are reached through a key of the
+     * chain's own, since there is no decorator class to name them by.
+     */
+    Key edge(final int i) {
+        if (i == 0) {
+            return target;
+        }
+        final Layer above = decorators.get(i - 1);
+        return Key.get(
+                target.getTypeLiteral(),
+                above.decorator != null
+                        ? Decorated.by(above.decorator)
+                        : Internals.named(target + " beneath layer " + (i - 1)));
+    }
+
+    private Class<?> type() {
+        return target.getTypeLiteral().getRawType();
+    }
+
+    @Override
+    public String toString() {
+        return "chain for " + target + " at " + source;
+    }
+}
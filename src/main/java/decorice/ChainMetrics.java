@@ -0,0 +1,55 @@
+package decorice;
+
+import com.google.inject.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-layer call counts, errors and latencies of an instrumented chain,
+ * outermost layer first. Bound in the injector under
+ * {@link #key(Key)} and exported over JMX as
+ * {@code decorice:type=ChainMetrics,chain=<key>}.
+ */
+public final class ChainMetrics {
+
+    private final Key<?> chain;
+    private final LayerMetrics[] layers;
+
+    ChainMetrics(final Key<?> chain, final List<String> layers) {
+        this.chain = chain;
+        this.layers = new LayerMetrics[layers.size()];
+        for (int i = 0; i < this.layers.length; i++) {
+            this.layers[i] = new LayerMetrics(layers.get(i));
+        }
+    }
+
+    /**
+     * The key the metrics of the chain bound to {@code chain} are bound to.
+     */
+    public static Key<ChainMetrics> key(final Key<?> chain) {
+        return Key.get(ChainMetrics.class, Internals.named("metrics of " + chain));
+    }
+
+    public Key<?> chain() {
+        return chain;
+    }
+
+    public List<LayerSnapshot> snapshot() {
+        final List<LayerSnapshot> snapshot = new ArrayList<>(layers.length);
+        for (final LayerMetrics layer : layers) {
+            snapshot.add(layer.snapshot());
+        }
+        return Collections.unmodifiableList(snapshot);
+    }
+
+    LayerMetrics layer(final int i) {
+        return layers[i];
+    }
+
+    @Override
+    public String toString() {
+        return "ChainMetrics" + snapshot();
+    }
+}
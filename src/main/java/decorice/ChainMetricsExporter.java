@@ -0,0 +1,97 @@
+package decorice;
+
+import com.google.inject.Inject;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers the metrics of a chain with the platform MBean server once the
+ * injector is created. A later injector binding the same chain takes over
+ * the name.
+ */
+final class ChainMetricsExporter implements ChainMetricsMXBean {
+
+    private static final Logger LOG = Logger.getLogger(ChainMetricsExporter.class.getName());
+
+    private final ChainMetrics metrics;
+
+    ChainMetricsExporter(final ChainMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Inject
+    void export() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(
+                    "decorice:type=ChainMetrics,chain="
+                            + ObjectName.quote(metrics.chain().toString()));
+            synchronized (ChainMetricsExporter.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            }
+        } catch (final JMException e) {
+            LOG.log(Level.WARNING, "Could not export the metrics of " + metrics.chain(), e);
+        }
+    }
+
+    @Override
+    public String getChain() {
+        return metrics.chain().toString();
+    }
+
+    @Override
+    public String[] getLayers() {
+        return metrics.snapshot().stream().map(LayerSnapshot::layer).toArray(String[]::new);
+    }
+
+    @Override
+    public long[] getCalls() {
+        return longs(LayerSnapshot::calls);
+    }
+
+    @Override
+    public long[] getErrors() {
+        return longs(LayerSnapshot::errors);
+    }
+
+    @Override
+    public double[] getMeanTotalNanos() {
+        return doubles(s -> s.totalTime().meanNanos());
+    }
+
+    @Override
+    public double[] getMeanSelfNanos() {
+        return doubles(s -> s.selfTime().meanNanos());
+    }
+
+    @Override
+    public long[] getP99TotalNanos() {
+        return longs(s -> s.totalTime().percentileNanos(0.99));
+    }
+
+    @Override
+    public long[] getP99SelfNanos() {
+        return longs(s -> s.selfTime().percentileNanos(0.99));
+    }
+
+    private long[] longs(final ToLongFunction<LayerSnapshot> f) {
+        final List<LayerSnapshot> snapshot = metrics.snapshot();
+        return snapshot.stream().mapToLong(f).toArray();
+    }
+
+    private double[] doubles(final ToDoubleFunction<LayerSnapshot> f) {
+        final List<LayerSnapshot> snapshot = metrics.snapshot();
+        return snapshot.stream().mapToDouble(f).toArray();
+    }
+}
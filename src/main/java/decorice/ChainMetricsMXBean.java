@@ -0,0 +1,16 @@
+package decorice;
+
+/**
+ * The JMX view of {@link ChainMetrics}: one array element per layer,
+ * outermost first.
+ */
+public interface ChainMetricsMXBean {
+    String getChain();
+    String[] getLayers();
+    long[] getCalls();
+    long[] getErrors();
+    double[] getMeanTotalNanos();
+    double[] getMeanSelfNanos();
+    long[] getP99TotalNanos();
+    long[] getP99SelfNanos();
+}
@@ -0,0 +1,62 @@
+package decorice;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An instance of a recorded chain built. Only {@link RecordedLayer} touches
+ * this class, and only on a JDK with Flight Recorder.
+ */
+@Name("decorice.ChainProvision")
+@Label("Chain Provision")
+@Category("decorice")
+@Description("An instance of a decorator chain built, with the time each of its layers took")
+@StackTrace(false)
+final class ChainProvisionEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(ChainProvisionEvent.class);
+
+    @Label("Key")
+    String key;
+
+    @Label("Depth")
+    @Description("The number of layers around the base")
+    int depth;
+
+    @Label("Layers")
+    @Description("The time each layer took to build, outermost first and without the layers "
+            + "beneath it, in nanoseconds; 0 for a layer that was already built")
+    String layers;
+
+    private ChainProvisionEvent() {}
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static Object start() {
+        final ChainProvisionEvent event = new ChainProvisionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void finish(
+            final Object begun,
+            final String key,
+            final int depth,
+            final String layers) {
+        final ChainProvisionEvent event = (ChainProvisionEvent) begun;
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.depth = depth;
+            event.layers = layers;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package decorice;
+
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scope;
+import com.google.inject.ScopeAnnotation;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.UntargettedBinding;
+import com.google.inject.util.Types;
+import decorice.DecoratorModule.Layer;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the chains of a {@link DecoratorModule} are made of, read through
+ * the Guice SPI from the modules that are about to make an injector or from
+ * the injector itself: the layers of every chain with their scopes and
+ * dependencies, an estimate of the objects each instance of the chain
+ * allocates, and the bindings that ask for such instances often.
+ *
+ * <pre>
+ * ChainReport report = ChainReport.of(modules);
+ * for (String warning : report.warnings()) {
+ *     log.warn(warning);
+ * }
+ * String json = report.toJson();
+ * </pre>
+ */
+public final class ChainReport {
+
+    /**
+     * The objects per instance from which a chain is worth a warning when
+     * it is built per request: at least two decorators and their base.
+     */
+    private static final int EXPENSIVE = 3;
+
+    private static final String UNSCOPED = "unscoped";
+    private static final String INLINE = "inline";
+
+    /**
+     * One layer of a chain, the base last.
+     */
+    public static final class LayerEntry {
+        private final String name;
+        private final Key<?> key;
+        private final String scope;
+        private final List<Key<?>> dependencies;
+
+        private LayerEntry(
+                final String name,
+                final Key<?> key,
+                final String scope,
+                final List<Key<?>> dependencies) {
+            this.name = name;
+            this.key = key;
+            this.scope = scope;
+            this.dependencies = Collections.unmodifiableList(dependencies);
+        }
+
+        /**
+         * The decorator class, the built-in layer, or the key of the base.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * The key the layer is bound under, {@code null} when the layer is
+         * built inline by the binding of a layer above it.
+         */
+        public Key<?> key() {
+            return key;
+        }
+
+        /**
+         * The scope of the layer, {@code "unscoped"}, or {@code "inline"}.
+         */
+        public String scope() {
+            return scope;
+        }
+
+        /**
+         * The keys the layer is built from, the layer beneath included.
+         */
+        public List<Key<?>> dependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + scope + ")";
+        }
+    }
+
+    /**
+     * One chain.
+     */
+    public static final class Entry {
+        private final Key<?> key;
+        private final String mode;
+        private final List<LayerEntry> layers;
+        private final int allocations;
+        private final List<Key<?>> dependents;
+
+        private Entry(
+                final Key<?> key,
+                final String mode,
+                final List<LayerEntry> layers,
+                final int allocations,
+                final List<Key<?>> dependents) {
+            this.key = key;
+            this.mode = mode;
+            this.layers = Collections.unmodifiableList(layers);
+            this.allocations = allocations;
+            this.dependents = Collections.unmodifiableList(dependents);
+        }
+
+        public Key<?> key() {
+            return key;
+        }
+
+        /**
+         * {@code "linked"}, {@code "fused"} or {@code "switchable"}.
+         */
+        public String mode() {
+            return mode;
+        }
+
+        /**
+         * The number of decorators.
+         */
+        public int depth() {
+            return layers.size() - 1;
+        }
+
+        /**
+         * Outermost first, the base last.
+         */
+        public List<LayerEntry> layers() {
+            return layers;
+        }
+
+        /**
+         * An estimate of the objects one instance of the chain allocates:
+         * the layers down to the first scoped or lazy one, their proxies,
+         * and one object for each of their unscoped dependencies, not
+         * counting what those allocate in turn. 0 when the chain is scoped.
+         */
+        public int allocationsPerInstance() {
+            return allocations;
+        }
+
+        /**
+         * The bindings that depend on the chain or on a provider of it.
+         */
+        public List<Key<?>> dependents() {
+            return dependents;
+        }
+
+        @Override
+        public String toString() {
+            return key + " " + mode + " " + layers
+                    + ", ~" + allocations + " objects per instance";
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+
+    private final Map<Key<?>, Binding<?>> bindings = new LinkedHashMap<>();
+    /**
+     * Every key met, bound or just in time, with the keys it is built from.
+     */
+    private final Map<Key<?>, Set<Key<?>>> graph = new LinkedHashMap<>();
+
+    private ChainReport(final Collection<? extends Binding<?>> all) {
+        final List<Chain> chains = new ArrayList<>();
+        for (final Binding<?> binding : all) {
+            bindings.put(binding.getKey(), binding);
+            final Chain chain = binding.acceptTargetVisitor(CHAINS);
+            if (chain != null) {
+                chains.add(chain);
+            }
+        }
+        for (final Key<?> key : new ArrayList<>(bindings.keySet())) {
+            dependencies(key);
+        }
+        final Set<Key<?>> internal = new HashSet<>();
+        for (final Chain chain : chains) {
+            for (int i = 1; i <= chain.decorators.size(); i++) {
+                internal.add(chain.edge(i));
+            }
+        }
+        for (final Chain chain : chains) {
+            entries.add(entry(chain, internal));
+        }
+    }
+
+    public static ChainReport of(final Module... modules) {
+        return of(Arrays.asList(modules));
+    }
+
+    /**
+     * Reads the modules without creating an injector. Bindings the
+     * injector would create just in time are followed from the classes
+     * bound.
+     */
+    public static ChainReport of(final Iterable<? extends Module> modules) {
+        final List<Binding<?>> bindings = new ArrayList<>();
+        for (final Element element : Elements.getElements(modules)) {
+            if (element instanceof Binding) {
+                bindings.add((Binding<?>) element);
+            }
+        }
+        return new ChainReport(bindings);
+    }
+
+    public static ChainReport of(final Injector injector) {
+        return new ChainReport(injector.getAllBindings().values());
+    }
+
+    /**
+     * In the order the chains were bound.
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Chains that allocate many objects per instance and are asked for per
+     * request, by an unscoped or request-scoped binding, or through a
+     * provider.
+     */
+    public List<String> warnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\"chains\":[");
+        for (int c = 0; c < entries.size(); c++) {
+            final Entry entry = entries.get(c);
+            json.append(c == 0 ? "" : ",")
+                    .append("{\"key\":").append(quote(entry.key))
+                    .append(",\"mode\":").append(quote(entry.mode))
+                    .append(",\"depth\":").append(entry.depth())
+                    .append(",\"allocationsPerInstance\":").append(entry.allocations)
+                    .append(",\"layers\":[");
+            for (int l = 0; l < entry.layers.size(); l++) {
+                final LayerEntry layer = entry.layers.get(l);
+                json.append(l == 0 ? "" : ",")
+                        .append("{\"name\":").append(quote(layer.name))
+                        .append(",\"key\":").append(quote(layer.key))
+                        .append(",\"scope\":").append(quote(layer.scope))
+                        .append(",\"dependencies\":").append(array(layer.dependencies))
+                        .append('}');
+            }
+            json.append("],\"dependents\":").append(array(entry.dependents)).append('}');
+        }
+        return json.append("],\"warnings\":").append(array(warnings)).append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder("ChainReport[");
+        for (final Entry entry : entries) {
+            s.append("\n  ").append(entry);
+        }
+        for (final String warning : warnings) {
+            s.append("\n  warning: ").append(warning);
+        }
+        return s.append(entries.isEmpty() && warnings.isEmpty() ? "]" : "\n]").toString();
+    }
+
+    private Entry entry(final Chain chain, final Set<Key<?>> internal) {
+        final int depth = chain.decorators.size();
+        final List<LayerEntry> layers = new ArrayList<>();
+        int allocations = 0;
+        boolean cached = false;
+        for (int i = 0; i <= depth; i++) {
+            final Layer layer = chain.layer(i);
+            final Key<?> edge = chain.edge(i);
+            Binding<?> binding = chain.bindsEdge(i) ? bindings.get(edge) : null;
+            if (binding instanceof LinkedKeyBinding
+                    && isInternal(((LinkedKeyBinding<?>) binding).getLinkedKey())) {
+                binding = bindings.get(((LinkedKeyBinding<?>) binding).getLinkedKey());
+            }
+            String scope = binding == null ? INLINE : scope(binding.getKey());
+            if (i == depth && !isScoped(scope) && isScoped(scope(layer.key))) {
+                scope = scope(layer.key);
+            }
+            final List<Key<?>> dependencies = new ArrayList<>();
+            if (layer.builtIn != null) {
+                dependencies.add(chain.edge(i + 1));
+            } else if (layer.decorator == null) {
+                dependencies.add(layer.key);
+            }
+            if (layer.key != null) {
+                dependencies.addAll(dependencies(layer.key));
+            }
+            layers.add(new LayerEntry(
+                    layer.toString(),
+                    binding == null ? null : edge,
+                    scope,
+                    dependencies));
+
+            cached |= isScoped(scope);
+            if (cached) {
+                continue;
+            }
+            if (layer.lazy) {
+                allocations += 2;
+                cached = true;
+                continue;
+            }
+            allocations += layer.builtIn != null ? 2 : 1;
+            allocations += chain.instrumented ? 2 : 0;
+            allocations += i == 0 && chain.switchable ? 2 : 0;
+            if (bindings.get(layer.key) instanceof LinkedKeyBinding) {
+                continue;
+            }
+            for (final Key<?> dependency : dependencies) {
+                if (!internal.contains(dependency)
+                        && !dependency.equals(layer.key)
+                        && allocates(dependency)) {
+                    allocations++;
+                }
+            }
+        }
+
+        final Key<?> target = chain.target;
+        final Key<?> provider = providerKey(target);
+        final List<Key<?>> dependents = new ArrayList<>();
+        for (final Map.Entry<Key<?>, Set<Key<?>>> e : graph.entrySet()) {
+            final Key<?> dependent = e.getKey();
+            if (internal.contains(dependent) || isInternal(dependent)) {
+                continue;
+            }
+            final boolean direct = e.getValue().contains(target);
+            final boolean throughProvider = e.getValue().contains(provider);
+            if (!direct && !throughProvider) {
+                continue;
+            }
+            dependents.add(dependent);
+            if (allocations < EXPENSIVE) {
+                continue;
+            }
+            final String scope = scope(dependent);
+            if (throughProvider) {
+                warnings.add(String.format(
+                        "%s gets the %s chain from a provider: ~%d objects per get()",
+                        dependent, target, allocations));
+            } else if (!isScoped(scope) || scope.toLowerCase().contains("request")) {
+                warnings.add(String.format(
+                        "%s is %s and depends on the unscoped %s chain: "
+                                + "~%d objects per instance",
+                        dependent, scope, target, allocations));
+            }
+        }
+        Collections.sort(dependents, (a, b) -> a.toString().compareTo(b.toString()));
+        return new Entry(
+                target,
+                chain.switchable ? "switchable" : chain.fused ? "fused" : "linked",
+                layers,
+                allocations,
+                dependents);
+    }
+
+    /**
+     * The keys the binding of {@code key} is built from, following the
+     * classes the injector would bind just in time.
+     */
+    private Set<Key<?>> dependencies(final Key<?> key) {
+        final Set<Key<?>> known = graph.get(key);
+        if (known != null) {
+            return known;
+        }
+        final Set<Key<?>> keys = new LinkedHashSet<>();
+        graph.put(key, keys);
+        final Binding<?> binding = bindings.get(key);
+        if (binding instanceof HasDependencies
+                && !(binding instanceof UntargettedBinding)) {
+            for (final Dependency<?> dependency
+                    : ((HasDependencies) binding).getDependencies()) {
+                keys.add(dependency.getKey());
+            }
+        } else if ((binding != null || key.getAnnotationType() == null)
+                && isConstructed(key.getTypeLiteral().getRawType())) {
+            final Class<?> type = key.getTypeLiteral().getRawType();
+            try {
+                for (final Dependency<?> dependency
+                        : InjectionPoint.forConstructorOf(type).getDependencies()) {
+                    keys.add(dependency.getKey());
+                }
+                for (final InjectionPoint member
+                        : InjectionPoint.forInstanceMethodsAndFields(type)) {
+                    for (final Dependency<?> dependency : member.getDependencies()) {
+                        keys.add(dependency.getKey());
+                    }
+                }
+            } catch (final ConfigurationException e) {
+                // reported when the injector is created
+            }
+        }
+        for (final Key<?> dependency : new ArrayList<>(keys)) {
+            dependencies(dependency);
+        }
+        return keys;
+    }
+
+    private String scope(final Key<?> key) {
+        final Binding<?> binding = bindings.get(key);
+        final String scope = binding == null ? null : binding.acceptScopingVisitor(SCOPES);
+        if (scope != null) {
+            return scope;
+        }
+        if (binding instanceof InstanceBinding) {
+            return "instance";
+        }
+        for (final Annotation annotation
+                : key.getTypeLiteral().getRawType().getAnnotations()) {
+            final Class<? extends Annotation> type = annotation.annotationType();
+            if (type.isAnnotationPresent(ScopeAnnotation.class)
+                    || type.isAnnotationPresent(javax.inject.Scope.class)) {
+                return "@" + type.getSimpleName();
+            }
+        }
+        return UNSCOPED;
+    }
+
+    /**
+     * Whether getting an instance of the key builds a new object.
+     */
+    private boolean allocates(final Key<?> key) {
+        final Binding<?> binding = bindings.get(key);
+        if (binding instanceof InstanceBinding) {
+            return false;
+        }
+        if (binding == null && !isConstructed(key.getTypeLiteral().getRawType())) {
+            return false;
+        }
+        return !isScoped(scope(key));
+    }
+
+    private static boolean isScoped(final String scope) {
+        return !scope.equals(UNSCOPED) && !scope.equals(INLINE);
+    }
+
+    private static boolean isConstructed(final Class<?> type) {
+        return !type.isInterface()
+                && !type.isPrimitive()
+                && !Modifier.isAbstract(type.getModifiers())
+                && !type.getName().startsWith("java.")
+                && !type.getName().startsWith("com.google.inject.");
+    }
+
+    private static boolean isInternal(final Key<?> key) {
+        return key.getAnnotationType() == DecoratedBy.class
+                || key.getAnnotationType() == Internal.class;
+    }
+
+    private static Key<?> providerKey(final Key<?> key) {
+        final java.lang.reflect.Type type = Types.providerOf(key.getTypeLiteral().getType());
+        return key.getAnnotation() != null ? Key.get(type, key.getAnnotation())
+                : key.getAnnotationType() != null ? Key.get(type, key.getAnnotationType())
+                : Key.get(type);
+    }
+
+    private static String quote(final Object value) {
+        if (value == null) {
+            return "null";
+        }
+        final StringBuilder s = new StringBuilder("\"");
+        for (final char c : value.toString().toCharArray()) {
+            switch (c) {
+                case '"': s.append("\\\""); break;
+                case '\\': s.append("\\\\"); break;
+                case '\n': s.append("\\n"); break;
+                case '\r': s.append("\\r"); break;
+                case '\t': s.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        s.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        s.append(c);
+                    }
+            }
+        }
+        return s.append('"').toString();
+    }
+
+    private static String array(final List<?> values) {
+        final StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            s.append(i == 0 ? "" : ",").append(quote(values.get(i)));
+        }
+        return s.append(']').toString();
+    }
+
+    private static final DefaultBindingTargetVisitor<Object, Chain> CHAINS =
+            new DefaultBindingTargetVisitor<Object, Chain>() {
+                @Override
+                public Chain visit(final InstanceBinding<?> binding) {
+                    return binding.getInstance() instanceof Chain
+                            ? (Chain) binding.getInstance()
+                            : null;
+                }
+            };
+
+    private static final DefaultBindingScopingVisitor<String> SCOPES =
+            new DefaultBindingScopingVisitor<String>() {
+                @Override
+                public String visitEagerSingleton() {
+                    return "asEagerSingleton";
+                }
+
+                @Override
+                public String visitScope(final Scope scope) {
+                    return scope.toString();
+                }
+
+                @Override
+                public String visitScopeAnnotation(final Class<? extends Annotation> annotation) {
+                    return "@" + annotation.getSimpleName();
+                }
+            };
+}
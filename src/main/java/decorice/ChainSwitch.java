@@ -0,0 +1,104 @@
+package decorice;
+
+import com.google.inject.Key;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the layers of a switchable chain on and off. Bound in the injector
+ * under {@link #key(Key)}. Each instance of the chain picks up a change on
+ * its next call; calls already under way finish on the layers they
+ * started with.
+ */
+public final class ChainSwitch {
+
+    /**
+     * Which decorators are enabled, outermost first. Replaced, never
+     * modified, on every change.
+     */
+    static final class State {
+        final long version;
+        final boolean[] enabled;
+
+        private State(final long version, final boolean[] enabled) {
+            this.version = version;
+            this.enabled = enabled;
+        }
+    }
+
+    private final Key<?> chain;
+    private final List<Class<?>> decorators;
+    private volatile State state;
+
+    ChainSwitch(final Key<?> chain, final List<Class<?>> decorators) {
+        this.chain = chain;
+        this.decorators = decorators;
+        final boolean[] enabled = new boolean[decorators.size()];
+        Arrays.fill(enabled, true);
+        this.state = new State(0, enabled);
+    }
+
+    /**
+     * The key the switch of the chain bound to {@code chain} is bound to.
+     */
+    public static Key<ChainSwitch> key(final Key<?> chain) {
+        return Key.get(ChainSwitch.class, Internals.named("switch of " + chain));
+    }
+
+    public Key<?> chain() {
+        return chain;
+    }
+
+    public void enable(final Class<?> decorator) {
+        set(decorator, true);
+    }
+
+    public void disable(final Class<?> decorator) {
+        set(decorator, false);
+    }
+
+    public boolean isEnabled(final Class<?> decorator) {
+        return state.enabled[indexOf(decorator)];
+    }
+
+    State state() {
+        return state;
+    }
+
+    private synchronized void set(final Class<?> decorator, final boolean enabled) {
+        final int index = indexOf(decorator);
+        final State current = state;
+        if (current.enabled[index] == enabled) {
+            return;
+        }
+        final boolean[] next = current.enabled.clone();
+        for (int i = 0; i < next.length; i++) {
+            if (decorators.get(i) == decorator) {
+                next[i] = enabled;
+            }
+        }
+        state = new State(current.version + 1, next);
+    }
+
+    private int indexOf(final Class<?> decorator) {
+        final int index = decorators.indexOf(decorator);
+        if (index < 0) {
+            throw new IllegalArgumentException(
+                    decorator.getName() + " does not decorate the chain for " + chain);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder("ChainSwitch[").append(chain);
+        final boolean[] enabled = state.enabled;
+        for (int i = 0; i < enabled.length; i++) {
+            s.append(", ")
+                    .append(decorators.get(i).getSimpleName())
+                    .append(enabled[i] ? " on" : " off");
+        }
+        return s.append(']').toString();
+    }
+}
@@ -0,0 +1,237 @@
+package decorice;
+
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds the eager singletons of the chains of every
+ * {@link DecoratorModule#warmUpInParallel() warmed-up} module of an
+ * injector, each after the eager singletons it depends on, and those that
+ * do not depend on each other in parallel.
+ *
+ * <pre>
+ * WarmUpReport report = ChainWarmUp.of(injector).run();
+ * </pre>
+ */
+public final class ChainWarmUp {
+
+    private final Injector injector;
+    /**
+     * Every key the warmed-up chains bind, with the keys it is built from.
+     */
+    private final Map<Key<?>, Collection<Key<?>>> chainDependencies = new HashMap<>();
+    private final Set<Key<?>> eager = new LinkedHashSet<>();
+
+    private ChainWarmUp(final Injector injector) {
+        this.injector = injector;
+        for (final Binding<Chain> binding
+                : injector.findBindingsByType(TypeLiteral.get(Chain.class))) {
+            final Chain chain = binding.getProvider().get();
+            if (!chain.warmedUp) {
+                continue;
+            }
+            chainDependencies.putAll(chain.dependencies());
+            eager.addAll(chain.eagerKeys());
+        }
+    }
+
+    public static ChainWarmUp of(final Injector injector) {
+        return new ChainWarmUp(injector);
+    }
+
+    /**
+     * Warms up on the common fork-join pool.
+     */
+    public WarmUpReport run() {
+        return run(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Singletons that depend on each other in a cycle, and those that
+     * depend on them, are built one after another on the calling thread
+     * once the others are built.
+     *
+     * @throws ProvisionException when a singleton cannot be built, after
+     *                            building every singleton that does not
+     *                            depend on it
+     */
+    public WarmUpReport run(final Executor executor) {
+        final long start = System.nanoTime();
+        final Map<Key<?>, Set<Key<?>>> dependencies = new HashMap<>();
+        for (final Key<?> key : eager) {
+            dependencies.put(key, eagerDependencies(key));
+        }
+        final List<Key<?>> ordered = new ArrayList<>();
+        final List<Key<?>> cyclic = new ArrayList<>();
+        order(dependencies, ordered, cyclic);
+
+        final ConcurrentLinkedQueue<Map.Entry<Key<?>, Long>> built =
+                new ConcurrentLinkedQueue<>();
+        final Map<Key<?>, CompletableFuture<Void>> builds = new HashMap<>();
+        for (final Key<?> key : ordered) {
+            final List<CompletableFuture<Void>> before = new ArrayList<>();
+            for (final Key<?> dependency : dependencies.get(key)) {
+                before.add(builds.get(dependency));
+            }
+            builds.put(key, CompletableFuture
+                    .allOf(before.toArray(new CompletableFuture<?>[0]))
+                    .thenRunAsync(() -> built.add(build(key)), executor));
+        }
+        final Set<Throwable> failures = Collections.newSetFromMap(new LinkedHashMap<>());
+        for (final CompletableFuture<Void> build : builds.values()) {
+            try {
+                build.join();
+            } catch (final CompletionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw failure(failures);
+        }
+        for (final Key<?> key : cyclic) {
+            built.add(build(key));
+        }
+
+        final Map<Key<?>, Long> buildNanos = new LinkedHashMap<>();
+        for (final Map.Entry<Key<?>, Long> e : built) {
+            buildNanos.put(e.getKey(), e.getValue());
+        }
+        return new WarmUpReport(buildNanos, System.nanoTime() - start);
+    }
+
+    private Map.Entry<Key<?>, Long> build(final Key<?> key) {
+        final long start = System.nanoTime();
+        injector.getInstance(key);
+        return new AbstractMap.SimpleImmutableEntry<>(key, System.nanoTime() - start);
+    }
+
+    private static ProvisionException failure(final Set<Throwable> failures) {
+        final Throwable first = failures.iterator().next();
+        final ProvisionException e = first instanceof ProvisionException
+                ? (ProvisionException) first
+                : new ProvisionException("Could not warm up a chain", first);
+        for (final Throwable other : failures) {
+            if (other != first) {
+                e.addSuppressed(other);
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Kahn's algorithm: what is left once nothing more can be ordered is
+     * either on a cycle or depends on one.
+     */
+    private static void order(
+            final Map<Key<?>, Set<Key<?>>> dependencies,
+            final List<Key<?>> ordered,
+            final List<Key<?>> cyclic) {
+        final Map<Key<?>, Integer> pending = new HashMap<>();
+        final Map<Key<?>, List<Key<?>>> dependents = new HashMap<>();
+        final Deque<Key<?>> ready = new ArrayDeque<>();
+        for (final Map.Entry<Key<?>, Set<Key<?>>> e : dependencies.entrySet()) {
+            pending.put(e.getKey(), e.getValue().size());
+            if (e.getValue().isEmpty()) {
+                ready.add(e.getKey());
+            }
+            for (final Key<?> dependency : e.getValue()) {
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(e.getKey());
+            }
+        }
+        while (!ready.isEmpty()) {
+            final Key<?> key = ready.poll();
+            ordered.add(key);
+            for (final Key<?> dependent
+                    : dependents.getOrDefault(key, Collections.<Key<?>>emptyList())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        final Set<Key<?>> done = new HashSet<>(ordered);
+        for (final Key<?> key : dependencies.keySet()) {
+            if (!done.contains(key)) {
+                cyclic.add(key);
+            }
+        }
+    }
+
+    /**
+     * The eager singletons {@code key} is built from, directly or through
+     * bindings that are not eager singletons themselves.
+     */
+    private Set<Key<?>> eagerDependencies(final Key<?> key) {
+        final Set<Key<?>> found = new HashSet<>();
+        final Set<Key<?>> visited = new HashSet<>();
+        final Deque<Key<?>> pending = new ArrayDeque<>(dependenciesOf(key));
+        while (!pending.isEmpty()) {
+            final Key<?> next = pending.pop();
+            if (!visited.add(next)) {
+                continue;
+            }
+            if (eager.contains(next)) {
+                found.add(next);
+            } else {
+                pending.addAll(dependenciesOf(next));
+            }
+        }
+        found.remove(key);
+        return found;
+    }
+
+    private Collection<Key<?>> dependenciesOf(final Key<?> key) {
+        final Collection<Key<?>> known = chainDependencies.get(key);
+        if (known != null) {
+            return known;
+        }
+        final Binding<?> binding;
+        try {
+            binding = injector.getBinding(key);
+        } catch (final ConfigurationException e) {
+            return Collections.emptyList();
+        }
+        if (binding instanceof LinkedKeyBinding) {
+            return Collections.<Key<?>>singletonList(
+                    ((LinkedKeyBinding<?>) binding).getLinkedKey());
+        }
+        if (binding instanceof ProviderKeyBinding) {
+            return Collections.<Key<?>>singletonList(
+                    ((ProviderKeyBinding<?>) binding).getProviderKey());
+        }
+        if (binding instanceof HasDependencies) {
+            final List<Key<?>> keys = new ArrayList<>();
+            for (final Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+                keys.add(dependency.getKey());
+            }
+            return keys;
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,71 @@
+package decorice;
+
+import com.google.inject.Binder;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A layer that lets only one of several concurrent identical calls, the
+ * same method with equal arguments, through to the layer beneath, and hands
+ * its result, or its exception, to all of them. Declared in
+ * {@code decoratedBy} with {@link DecoratorModule#layer(Coalescing)}.
+ *
+ * <p>Calls are only coalesced with calls made through the same instance of
+ * the layer; see "Built-in layers" in the README on scoping it. Nothing is
+ * kept once a call returns.
+ */
+public final class Coalescing extends BuiltInLayer {
+
+    private static final int DEFAULT_MAXIMUM_IN_FLIGHT = 10_000;
+
+    private final Set<String> methods;
+    private int maximumInFlight = DEFAULT_MAXIMUM_IN_FLIGHT;
+
+    private Coalescing(final Set<String> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Coalesces the methods with these names, or every method that returns
+     * something if none is given.
+     */
+    public static Coalescing of(final String... methods) {
+        return new Coalescing(new LinkedHashSet<>(Arrays.asList(methods)));
+    }
+
+    /**
+     * Bounds the number of distinct calls tracked at once, 10,000 unless told
+     * otherwise; calls beyond it go through without being coalesced.
+     */
+    public Coalescing maximumInFlight(final int maximumInFlight) {
+        if (maximumInFlight <= 0) {
+            throw new IllegalArgumentException("Not positive: " + maximumInFlight);
+        }
+        this.maximumInFlight = maximumInFlight;
+        return this;
+    }
+
+    @Override
+    boolean validate(final Binder binder, final Class<?> type) {
+        return checkMethodsReturnValues(binder, type, methods, "coalesce");
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final Set<Method> coalesced = new HashSet<>(methodsReturningValues(type, methods));
+        return decorated -> Proxies.of(
+                type,
+                new CoalescingLayer(decorated, coalesced, maximumInFlight));
+    }
+
+    @Override
+    public String toString() {
+        return "Coalescing[" + (methods.isEmpty() ? "all methods" : String.join(", ", methods))
+                + ", maximumInFlight=" + maximumInFlight + "]";
+    }
+}
@@ -0,0 +1,82 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent identical calls. The first caller makes the call
+ * and publishes its outcome through a future the others wait on; the
+ * future is removed from the in-flight map before it is completed, whatever
+ * the outcome, so a later call is never answered with an earlier result.
+ */
+final class CoalescingLayer implements InvocationHandler {
+
+    private final Object decorated;
+    private final Set<Method> coalesced;
+    private final int maximumInFlight;
+    private final ConcurrentMap<MethodCall, CompletableFuture<Object>> inFlight =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    CoalescingLayer(
+            final Object decorated,
+            final Set<Method> coalesced,
+            final int maximumInFlight) {
+        this.decorated = decorated;
+        this.coalesced = coalesced;
+        this.maximumInFlight = maximumInFlight;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (!coalesced.contains(method)) {
+            return Proxies.call(decorated, method, args);
+        }
+        final MethodCall call = new MethodCall(method, args);
+        final CompletableFuture<Object> existing = inFlight.get(call);
+        if (existing != null) {
+            return await(existing);
+        }
+        if (size.incrementAndGet() > maximumInFlight) {
+            size.decrementAndGet();
+            return Proxies.call(decorated, method, args);
+        }
+        final CompletableFuture<Object> mine = new CompletableFuture<>();
+        final CompletableFuture<Object> raced = inFlight.putIfAbsent(call, mine);
+        if (raced != null) {
+            size.decrementAndGet();
+            return await(raced);
+        }
+        final Object value;
+        try {
+            value = Proxies.call(decorated, method, args);
+        } catch (final Throwable e) {
+            release(call, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        release(call, mine);
+        mine.complete(value);
+        return value;
+    }
+
+    private void release(final MethodCall call, final CompletableFuture<Object> mine) {
+        inFlight.remove(call, mine);
+        size.decrementAndGet();
+    }
+
+    private static Object await(final CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            throw e.getCause();
+        }
+    }
+}
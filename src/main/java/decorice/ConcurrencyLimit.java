@@ -0,0 +1,139 @@
+package decorice;
+
+import com.google.inject.Binder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A layer that limits the calls in flight to the layer beneath, declared in
+ * {@code decoratedBy} with {@link DecoratorModule#layer(ConcurrencyLimit)},
+ * normally just above the base:
+ *
+ * <pre>
+ * decoratedBy(layer(D1.class), layer(ConcurrencyLimit.create().queue(50, 10, MILLISECONDS)))
+ * </pre>
+ *
+ * <p>The limit adjusts itself to the latency of the calls: it grows while
+ * they take about as long as they do without load, and shrinks as they
+ * start to queue up in the layer beneath, which keeps the calls near the
+ * most the layer beneath can take without its latency going up. A call
+ * that finds the limit reached fails at once with a
+ * {@link ConcurrencyLimitExceededException}, unless the layer lets calls
+ * wait for a permit.
+ *
+ * <p>The limit is shared by every instance of the layer, in every chain it
+ * is declared in. It is configured before the first of them is built, and
+ * cannot be changed after.
+ */
+public final class ConcurrencyLimit extends BuiltInLayer {
+
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int DEFAULT_MAXIMUM_LIMIT = 1000;
+
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private int minimumLimit = 1;
+    private int maximumLimit = DEFAULT_MAXIMUM_LIMIT;
+    private int maximumQueued;
+    private long maximumWaitNanos;
+    private final ConcurrencyLimitStats stats = new ConcurrencyLimitStats();
+    private ConcurrencyLimiter limiter;
+
+    private ConcurrencyLimit() {
+    }
+
+    public static ConcurrencyLimit create() {
+        return new ConcurrencyLimit();
+    }
+
+    /**
+     * 20 unless told otherwise.
+     */
+    public synchronized ConcurrencyLimit initialLimit(final int initialLimit) {
+        checkNotBuilt();
+        if (initialLimit <= 0) {
+            throw new IllegalArgumentException("Not positive: " + initialLimit);
+        }
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * Between 1 and 1000 unless told otherwise.
+     */
+    public synchronized ConcurrencyLimit limits(final int minimumLimit, final int maximumLimit) {
+        checkNotBuilt();
+        if (minimumLimit <= 0 || maximumLimit < minimumLimit) {
+            throw new IllegalArgumentException(
+                    "Not valid: limits from " + minimumLimit + " to " + maximumLimit);
+        }
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        return this;
+    }
+
+    /**
+     * Lets up to {@code maximumQueued} calls that find the limit reached
+     * wait for a permit, each at most {@code maximumWait}, rather than fail
+     * at once.
+     */
+    public synchronized ConcurrencyLimit queue(
+            final int maximumQueued,
+            final long maximumWait,
+            final TimeUnit unit) {
+        checkNotBuilt();
+        if (maximumQueued < 0) {
+            throw new IllegalArgumentException("Negative: " + maximumQueued);
+        }
+        if (maximumWait < 0) {
+            throw new IllegalArgumentException("Negative: " + maximumWait);
+        }
+        this.maximumQueued = maximumQueued;
+        this.maximumWaitNanos = unit.toNanos(maximumWait);
+        return this;
+    }
+
+    public ConcurrencyLimitStats stats() {
+        return stats;
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final ConcurrencyLimiter limiter = limiter();
+        return decorated -> Proxies.of(type, new ConcurrencyLimitLayer(decorated, limiter));
+    }
+
+    /**
+     * Created when the layer is first built, once it is configured.
+     */
+    private synchronized ConcurrencyLimiter limiter() {
+        if (limiter == null) {
+            limiter = new ConcurrencyLimiter(
+                    initialLimit,
+                    minimumLimit,
+                    maximumLimit,
+                    maximumQueued,
+                    maximumWaitNanos,
+                    stats);
+            stats.limiter = limiter;
+        }
+        return limiter;
+    }
+
+    private void checkNotBuilt() {
+        if (limiter != null) {
+            throw new IllegalStateException(
+                    this + " is already built into a chain and cannot be changed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimit[" + minimumLimit + " to " + maximumLimit
+                + ", initially " + initialLimit
+                + (maximumQueued > 0
+                        ? ", queue=" + maximumQueued + " for " + maximumWaitNanos + "ns"
+                        : "")
+                + "]";
+    }
+}
@@ -0,0 +1,15 @@
+package decorice;
+
+/**
+ * Thrown to a caller turned away by a {@link ConcurrencyLimit} layer: at
+ * once when its limit is reached, or after waiting in its queue for as long
+ * as the layer lets calls wait.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    ConcurrencyLimitExceededException(final String message) {
+        super(message);
+    }
+}
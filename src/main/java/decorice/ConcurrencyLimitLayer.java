@@ -0,0 +1,34 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * Lets a call through to the layer beneath only with a permit of the
+ * limiter, and reports how long it took.
+ */
+final class ConcurrencyLimitLayer implements InvocationHandler {
+
+    private final Object decorated;
+    private final ConcurrencyLimiter limiter;
+
+    ConcurrencyLimitLayer(final Object decorated, final ConcurrencyLimiter limiter) {
+        this.decorated = decorated;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (Proxies.isObjectMethod(method)) {
+            return Proxies.call(decorated, method, args);
+        }
+        limiter.acquire(method);
+        final long start = System.nanoTime();
+        try {
+            return Proxies.call(decorated, method, args);
+        } finally {
+            limiter.release(start);
+        }
+    }
+}
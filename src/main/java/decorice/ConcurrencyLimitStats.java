@@ -0,0 +1,68 @@
+package decorice;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The limit of a concurrency-limiting layer and the calls it has let
+ * through or turned away, read live.
+ */
+public final class ConcurrencyLimitStats {
+
+    /**
+     * {@code null} until the layer is first built.
+     */
+    volatile ConcurrencyLimiter limiter;
+    final LongAdder accepted = new LongAdder();
+    final LongAdder queued = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    ConcurrencyLimitStats() {
+    }
+
+    /**
+     * How many calls may be in flight at the moment, 0 until the layer is
+     * first built.
+     */
+    public int limit() {
+        final ConcurrencyLimiter limiter = this.limiter;
+        return limiter == null ? 0 : limiter.limit();
+    }
+
+    public int inFlight() {
+        final ConcurrencyLimiter limiter = this.limiter;
+        return limiter == null ? 0 : limiter.inFlight();
+    }
+
+    /**
+     * The calls let through, at once or after waiting.
+     */
+    public long accepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * The calls that waited for a permit, whether they got one or not.
+     */
+    public long queued() {
+        return queued.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * How long the calls let through took in the layer beneath.
+     */
+    public LatencyDistribution latency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "limit=" + limit() + " inFlight=" + inFlight() + " accepted=" + accepted()
+                + " queued=" + queued() + " rejected=" + rejected()
+                + " latency[" + latency() + "]";
+    }
+}
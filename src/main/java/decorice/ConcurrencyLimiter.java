@@ -0,0 +1,188 @@
+package decorice;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out permits to call the layer beneath, up to a limit it adjusts to
+ * the latency of the calls they let through.
+ *
+ * <p>The limit follows a gradient: the ratio of the latency without load,
+ * the lowest average latency over a window of calls so far, aged slowly
+ * towards the latest one, to the average latency of the last window. While
+ * the latency stays within half as much again as that, the limit grows by
+ * its square root each window; beyond, it shrinks in proportion, down to
+ * half. A limit that was not half used in a window does not grow.
+ *
+ * <p>Permits are counted on a single counter, taken by compare-and-set
+ * without locks; the latencies are summed on striped counters, and the
+ * window is closed by whichever call ends it first. Calls that find no
+ * permit are turned away at once, unless the limiter lets a bounded number
+ * of them wait, the only time it takes a lock.
+ */
+final class ConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final double AGING = 0.001;
+    private static final int MINIMUM_SAMPLES = 10;
+    private static final long MINIMUM_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private final int maximumQueued;
+    private final long maximumWaitNanos;
+    private final ConcurrencyLimitStats stats;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampleNanos = new LongAdder();
+    /**
+     * {@link Long#MAX_VALUE} while a call is adjusting the limit.
+     */
+    private final AtomicLong windowEnd = new AtomicLong();
+    private volatile int limit;
+    /**
+     * The most calls in flight in the current window.
+     */
+    private volatile int peak;
+
+    /**
+     * Only touched by the call adjusting the limit.
+     */
+    private double estimate;
+    private double noLoadLatency;
+
+    ConcurrencyLimiter(
+            final int initialLimit,
+            final int minimumLimit,
+            final int maximumLimit,
+            final int maximumQueued,
+            final long maximumWaitNanos,
+            final ConcurrencyLimitStats stats) {
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.maximumQueued = maximumQueued;
+        this.maximumWaitNanos = maximumWaitNanos;
+        this.estimate = Math.max(minimumLimit, Math.min(maximumLimit, initialLimit));
+        this.limit = (int) estimate;
+        this.stats = stats;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @throws ConcurrencyLimitExceededException when no permit can be had
+     */
+    void acquire(final Method method) {
+        if (tryAcquire() || maximumQueued > 0 && await()) {
+            stats.accepted.increment();
+            return;
+        }
+        stats.rejected.increment();
+        throw new ConcurrencyLimitExceededException(
+                method + " turned away: " + limit + " calls in flight already");
+    }
+
+    /**
+     * @param start of the call the permit let through
+     */
+    void release(final long start) {
+        final long now = System.nanoTime();
+        inFlight.decrementAndGet();
+        if (waiting.get() > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        final long nanos = now - start;
+        stats.latency.record(nanos);
+        samples.increment();
+        sampleNanos.add(nanos);
+        final long end = windowEnd.get();
+        if (now >= end && windowEnd.compareAndSet(end, Long.MAX_VALUE)) {
+            adjust(now);
+        }
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            final int calls = inFlight.get();
+            if (calls >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(calls, calls + 1)) {
+                if (calls + 1 > peak) {
+                    peak = calls + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    private boolean await() {
+        if (waiting.incrementAndGet() > maximumQueued) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        stats.queued.increment();
+        try {
+            final long deadline = System.nanoTime() + maximumWaitNanos;
+            synchronized (this) {
+                while (!tryAcquire()) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                return true;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes the window, unless it has too few calls to go by yet, and
+     * opens the next one.
+     */
+    private void adjust(final long now) {
+        final long count = samples.sumThenReset();
+        final long nanos = sampleNanos.sumThenReset();
+        if (count < MINIMUM_SAMPLES) {
+            samples.add(count);
+            sampleNanos.add(nanos);
+            windowEnd.set(now + MINIMUM_WINDOW_NANOS);
+            return;
+        }
+        final double latency = (double) nanos / count;
+        noLoadLatency = noLoadLatency == 0 || latency < noLoadLatency
+                ? latency
+                : noLoadLatency + AGING * (latency - noLoadLatency);
+        final double gradient = Math.max(0.5, Math.min(1, TOLERANCE * noLoadLatency / latency));
+        double next = estimate * gradient + Math.sqrt(estimate);
+        if (next > estimate && peak < estimate / 2) {
+            next = estimate;
+        }
+        estimate = Math.max(
+                minimumLimit,
+                Math.min(maximumLimit, estimate * (1 - SMOOTHING) + next * SMOOTHING));
+        limit = (int) estimate;
+        peak = 0;
+        windowEnd.set(now + Math.max(MINIMUM_WINDOW_NANOS, 4 * (long) latency));
+    }
+}
@@ -0,0 +1,149 @@
+package decorice;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.Scope;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A singleton scope that locks each binding on its own. Guice's singleton
+ * scope builds every singleton under one injector-wide lock, so threads that
+ * ask for different singletons wait for each other.
+ *
+ * <p>A binding that depends on itself, on the same thread or through
+ * singletons being built on other threads, is reported instead of
+ * recursing or deadlocking.
+ */
+final class ConcurrentSingleton implements Scope {
+
+    private static final Object NULL = new Object();
+
+    /**
+     * The singleton each thread is waiting to build.
+     */
+    private static final ConcurrentMap<Thread, Singleton<?>> WAITING =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The keys being built on the current thread, innermost first.
+     */
+    private static final ThreadLocal<Deque<Key<?>>> BUILDING =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    ConcurrentSingleton() {}
+
+    @Override
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+        return new Singleton<>(key, unscoped);
+    }
+
+    @Override
+    public String toString() {
+        return "DecoriceScopes.CONCURRENT_SINGLETON";
+    }
+
+    private final class Singleton<T> implements Provider<T> {
+        private final Key<T> key;
+        private final Provider<T> unscoped;
+        private volatile Object instance;
+        private volatile Thread builder;
+
+        private Singleton(final Key<T> key, final Provider<T> unscoped) {
+            this.key = key;
+            this.unscoped = unscoped;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get() {
+            Object current = instance;
+            if (current == null) {
+                current = build();
+            }
+            return current == NULL ? null : (T) current;
+        }
+
+        private Object build() {
+            final Thread thread = Thread.currentThread();
+            if (builder == thread) {
+                throw cycle();
+            }
+            WAITING.put(thread, this);
+            try {
+                checkNotDeadlocked(thread);
+                synchronized (this) {
+                    WAITING.remove(thread);
+                    Object current = instance;
+                    if (current != null) {
+                        return current;
+                    }
+                    builder = thread;
+                    BUILDING.get().push(key);
+                    try {
+                        final T built = unscoped.get();
+                        current = built == null ? NULL : built;
+                        instance = current;
+                        return current;
+                    } finally {
+                        BUILDING.get().pop();
+                        builder = null;
+                    }
+                }
+            } finally {
+                WAITING.remove(thread);
+            }
+        }
+
+        /**
+         * Follows the singletons the builders of this one are waiting for.
+         * Every thread registers what it waits for before checking, so of two
+         * threads about to wait for each other at least the second sees it.
+         */
+        private void checkNotDeadlocked(final Thread thread) {
+            final List<String> waits = new ArrayList<>();
+            Singleton<?> waitedFor = this;
+            while (waitedFor != null) {
+                final Thread owner = waitedFor.builder;
+                if (owner == null) {
+                    return;
+                }
+                waits.add(waitedFor.key + " being built on " + owner.getName());
+                if (owner == thread) {
+                    throw new ProvisionException(
+                            "Singletons that depend on each other are being built on "
+                                    + "different threads: " + key + " waits for "
+                                    + String.join(", which waits for ", waits));
+                }
+                waitedFor = WAITING.get(owner);
+            }
+        }
+
+        private ProvisionException cycle() {
+            final StringBuilder path = new StringBuilder();
+            final Iterator<Key<?>> building = BUILDING.get().descendingIterator();
+            boolean inCycle = false;
+            while (building.hasNext()) {
+                final Key<?> next = building.next();
+                inCycle |= next.equals(key);
+                if (inCycle) {
+                    path.append(next).append(" -> ");
+                }
+            }
+            return new ProvisionException(
+                    "Singleton depends on itself: " + path.append(key));
+        }
+
+        @Override
+        public String toString() {
+            return unscoped + "[" + ConcurrentSingleton.this + "]";
+        }
+    }
+}
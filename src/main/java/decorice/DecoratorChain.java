@@ -0,0 +1,50 @@
+package decorice;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Declares a chain at compile time. With {@code decorice-processor} on the
+ * annotation processor path, every class carrying chain declarations gets a
+ * generated {@code <ClassName>_DecoratorChains} module that binds them with
+ * plain constructor calls, the equivalent of
+ *
+ * <pre>
+ * bind(bind).annotatedWith(annotatedWith).to(to).decoratedBy(decoratedBy).fused().in(in)
+ * </pre>
+ *
+ * A decorator that does not take the decorated instance as a parameter
+ * annotated with {@code @DecoratedBy} of itself fails the build.
+ */
+@Target(TYPE) @Retention(CLASS) @Repeatable(DecoratorChains.class)
+public @interface DecoratorChain {
+    Class<?> bind();
+
+    /**
+     * A binding annotation without attributes; {@code Annotation.class} for
+     * none.
+     */
+    Class<? extends Annotation> annotatedWith() default Annotation.class;
+
+    /**
+     * A {@code @Named} binding annotation; ignored when empty.
+     */
+    String named() default "";
+
+    Class<?> to();
+
+    /**
+     * Outermost first.
+     */
+    Class<?>[] decoratedBy();
+
+    /**
+     * A scope annotation; {@code Annotation.class} for unscoped.
+     */
+    Class<? extends Annotation> in() default Annotation.class;
+}
@@ -0,0 +1,12 @@
+package decorice;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+@Target(TYPE) @Retention(CLASS)
+public @interface DecoratorChains {
+    DecoratorChain[] value();
+}
@@ -1,19 +1,27 @@
 package decorice;
 
-import com.google.inject.AbstractModule;
 import com.google.inject.Binder;
 import com.google.inject.Key;
+import com.google.inject.Provider;
 import com.google.inject.Scope;
+import com.google.inject.TypeLiteral;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.stream.IntStream;
 
+/**
+ * Binds any number of chains. Every call to {@link #bind(Class)} declares a
+ * new chain; all of them are bound in a single pass when the module is
+ * configured, after checking that no two chains bind the same key
+ * differently.
+ */
 @SuppressWarnings("unchecked")
 public class DecoratorModule implements com.google.inject.Module {
 
@@ -26,168 +34,477 @@ public class DecoratorModule implements com.google.inject.Module {
     public static interface LinkedBindingBuilder<T> {
         DecorationBindingBuilder<T> to(Key<? extends T> key);
         DecorationBindingBuilder<T> to(Class<? extends T> clazz);
+        DecorationBindingBuilder<T> to(Layer<? extends T> layer);
+
+        /**
+         * Decorates an instance built outside the injector. Its members are
+         * injected like those of any instance binding.
+         */
+        DecorationBindingBuilder<T> toInstance(T instance);
+
+        /**
+         * Decorates whatever the provider returns, on every instance of the
+         * chain that is built.
+         */
+        DecorationBindingBuilder<T> toProvider(Provider<? extends T> provider);
+
+        DecorationBindingBuilder<T> toProvider(
+                Key<? extends javax.inject.Provider<? extends T>> providerKey);
+    }
+
+    public static interface ChainBindingBuilder extends ScopedBindingBuilder {
+        /**
+         * Binds the chain to a single provider that builds the decorators
+         * itself, innermost first, instead of resolving one
+         * {@code @DecoratedBy} binding per layer. The decorators' other
+         * dependencies still come from the injector. Method interceptors are
+         * not applied to the decorators of a fused chain.
+         */
+        ChainBindingBuilder fused();
+
+        /**
+         * Records calls, errors, and total and self latency of every layer,
+         * available from the injector under {@link ChainMetrics#key(Key)}
+         * and over JMX. Each layer then sits behind a dynamic proxy; chains
+         * that are not instrumented have none. The chain must be bound to
+         * an interface.
+         */
+        ChainBindingBuilder instrumented();
+
+        /**
+         * Emits Java Flight Recorder events for the chain: a
+         * {@code decorice.ChainProvision} event for each instance built,
+         * with the time each layer took, and a {@code decorice.LayerCall}
+         * event for each call of a layer, which names its decorator. Each
+         * event type is turned on in the settings of a recording like any
+         * other; while it is off, the chain only asks Flight Recorder
+         * whether it is on. Only layers built while call events are on sit
+         * behind a dynamic proxy, and only in chains bound to an interface.
+         * On a JDK without Flight Recorder the chain is bound as if it were
+         * not recorded.
+         */
+        ChainBindingBuilder recorded();
+
+        /**
+         * Like {@link #recorded()}, with a {@code decorice.LayerCall} event
+         * for one call in {@code oneCallIn} of each layer, picked at random,
+         * or for none when it is 0.
+         */
+        ChainBindingBuilder recorded(int oneCallIn);
+
+        /**
+         * Binds the chain to a front that forwards to the decorators
+         * currently enabled through the {@link ChainSwitch} bound under
+         * {@link ChainSwitch#key(Key)}, so that layers can be turned off and
+         * on without a new injector. The decorators of a switchable chain
+         * are built like those of a fused chain and cannot be scoped on their
+         * own. The chain must be bound to an interface.
+         */
+        ChainBindingBuilder switchable();
+
+        /**
+         * Makes the chain switchable and routes its calls around its
+         * optional layers while their average latency nears the budget,
+         * turning the layers back on once the load has dropped enough for
+         * them to fit in it again. The state of each layer can be read from
+         * the {@link ChainSwitch} of the chain.
+         */
+        ChainBindingBuilder latencyBudget(long budget, TimeUnit unit);
     }
 
     public static interface DecorationBindingBuilder<T> {
-        ScopedBindingBuilder decoratedBy(
+        ChainBindingBuilder decoratedBy(
                 Class<? extends T> first,
                 Class<? extends T>... rest);
+        ChainBindingBuilder decoratedBy(
+                Layer<? extends T> first,
+                Layer<? extends T>... rest);
     }
 
     public static interface AnnotatedBindingBuilder<T>
             extends LinkedBindingBuilder<T> {
         LinkedBindingBuilder<T> annotatedWith(Class<? extends Annotation> annotationType);
+        LinkedBindingBuilder<T> annotatedWith(Annotation annotation);
+    }
+
+    /**
+     * One link of a chain that can be scoped on its own, independently of the
+     * scope of the chain. Scoping an inner layer (or the base) shares it, and
+     * everything beneath it, between the instances of the layers above it.
+     */
+    public static final class Layer<T> {
+        final Key<T> key;
+        final Class<T> decorator;
+        final BuiltInLayer builtIn;
+        Scoping scoping = Scoping.UNSCOPED;
+        boolean lazy;
+        boolean optional;
+
+        private Layer(final Key<T> key, final Class<T> decorator) {
+            this.key = key;
+            this.decorator = decorator;
+            this.builtIn = null;
+        }
+
+        private Layer(final BuiltInLayer builtIn) {
+            this.key = null;
+            this.decorator = null;
+            this.builtIn = builtIn;
+        }
+
+        /**
+         * The class the layer is known by: its decorator, or the class of a
+         * built-in layer.
+         */
+        Class<?> kind() {
+            return builtIn != null ? builtIn.getClass() : decorator;
+        }
+
+        @Override
+        public String toString() {
+            return builtIn != null ? builtIn.toString()
+                    : decorator != null ? decorator.getName()
+                    : key.toString();
+        }
+
+        public Layer<T> in(final Class<? extends Annotation> annotationType) {
+            scoping = Scoping.in(annotationType);
+            return this;
+        }
+
+        public Layer<T> in(final Scope scope) {
+            scoping = Scoping.in(scope);
+            return this;
+        }
+
+        public Layer<T> asEagerSingleton() {
+            scoping = Scoping.EAGER_SINGLETON;
+            return this;
+        }
+
+        /**
+         * Builds the layer, and everything beneath it, on the first call of
+         * one of its methods rather than when the layer above it is built.
+         * Until then a stub stands in its place. A scoped lazy layer shares
+         * the stub. The chain must be bound to an interface.
+         */
+        public Layer<T> lazy() {
+            lazy = true;
+            return this;
+        }
+
+        /**
+         * Lets a chain with a latency budget route its calls around the
+         * layer while the budget is at risk.
+         */
+        public Layer<T> optional() {
+            optional = true;
+            return this;
+        }
+    }
+
+    public static <T> Layer<T> layer(final Class<T> clazz) {
+        return new Layer<>(Key.get(clazz), clazz);
+    }
+
+    /**
+     * Only the base of a chain may be given as a key.
+     */
+    public static <T> Layer<T> layer(final Key<T> key) {
+        return new Layer<>(key, null);
+    }
+
+    /**
+     * A layer that caches what the methods of the chain return.
+     */
+    public static <T> Layer<T> layer(final Memoization memoization) {
+        return new Layer<>(memoization);
+    }
+
+    /**
+     * A layer that runs the calls of the chain on an executor.
+     */
+    public static <T> Layer<T> layer(final Offloading offloading) {
+        return new Layer<>(offloading);
+    }
+
+    /**
+     * A layer that lets one of several concurrent identical calls through
+     * and shares its result with the others.
+     */
+    public static <T> Layer<T> layer(final Coalescing coalescing) {
+        return new Layer<>(coalescing);
+    }
+
+    /**
+     * A layer that gathers concurrent single-item calls into bulk calls.
+     */
+    public static <T> Layer<T> layer(final Batching batching) {
+        return new Layer<>(batching);
     }
 
-    private class BindingBuilder<T> implements
+    /**
+     * A layer that limits the calls in flight to the layer beneath, to a
+     * limit it adjusts to their latency.
+     */
+    public static <T> Layer<T> layer(final ConcurrencyLimit concurrencyLimit) {
+        return new Layer<>(concurrencyLimit);
+    }
+
+    /**
+     * A layer that sends a second call of a slow idempotent method and
+     * answers with whichever call succeeds first.
+     */
+    public static <T> Layer<T> layer(final Hedging hedging) {
+        return new Layer<>(hedging);
+    }
+
+    private static class BindingBuilder<T> implements
             AnnotatedBindingBuilder<T>,
             DecorationBindingBuilder<T>,
-            ScopedBindingBuilder
+            ChainBindingBuilder
     {
+        private final Chain chain;
+
+        private BindingBuilder(final Chain chain) {
+            this.chain = chain;
+        }
+
         @Override
         public LinkedBindingBuilder<T> annotatedWith(
                 final Class<? extends Annotation> annotationType) {
-            annotation = Optional.of(b -> b.annotatedWith(annotationType));
+            chain.target = Key.get(chain.target.getTypeLiteral(), annotationType);
             return this;
         }
 
         @Override
-        public ScopedBindingBuilder decoratedBy(
+        public LinkedBindingBuilder<T> annotatedWith(
+                final Annotation annotation) {
+            chain.target = Key.get(chain.target.getTypeLiteral(), annotation);
+            return this;
+        }
+
+        @Override
+        public ChainBindingBuilder decoratedBy(
                 final Class<? extends T> first,
                 final Class<? extends T>... rest) {
-            decorators = new ArrayList<>();
-            decorators.add(first);
-            decorators.addAll(Arrays.asList(rest));
+            chain.decorators = new ArrayList<>(rest.length + 1);
+            chain.decorators.add(layer(first));
+            Arrays.stream(rest).forEach(d -> chain.decorators.add(layer(d)));
             return this;
         }
 
         @Override
-        public DecorationBindingBuilder<T> to(final Key<? extends T> key) {
-            link = b -> b.to(key);
+        public ChainBindingBuilder decoratedBy(
+                final Layer<? extends T> first,
+                final Layer<? extends T>... rest) {
+            chain.decorators = new ArrayList<>(rest.length + 1);
+            chain.decorators.add(first);
+            chain.decorators.addAll(Arrays.asList(rest));
             return this;
         }
 
         @Override
-        public DecorationBindingBuilder<T> to(final Class<? extends T> clazz) {
-            link = b -> b.to(clazz);
+        public ChainBindingBuilder fused() {
+            chain.fused = true;
             return this;
         }
 
         @Override
-        public void in(final Class<? extends Annotation> annotationType) {
-            scope = Optional.of(b -> b.in(annotationType));
+        public ChainBindingBuilder instrumented() {
+            chain.instrumented = true;
+            return this;
         }
 
         @Override
-        public void asEagerSingleton() {
-            scope = Optional.of(com.google.inject.binder.ScopedBindingBuilder::asEagerSingleton);
+        public ChainBindingBuilder recorded() {
+            return recorded(1);
         }
 
         @Override
-        public void in(final Scope scope) {
-            DecoratorModule.this.scope = Optional.of(b -> b.in(scope));
+        public ChainBindingBuilder recorded(final int oneCallIn) {
+            chain.recorded = true;
+            chain.recordedCalls = oneCallIn;
+            return this;
         }
 
-    }
+        @Override
+        public ChainBindingBuilder switchable() {
+            chain.switchable = true;
+            return this;
+        }
 
-    @SuppressWarnings("ClassExplicitlyAnnotation")
-    private static class Decorated implements DecoratedBy {
-        private final Class<?> value;
+        @Override
+        public ChainBindingBuilder latencyBudget(final long budget, final TimeUnit unit) {
+            if (budget <= 0) {
+                throw new IllegalArgumentException("Not positive: " + budget);
+            }
+            chain.switchable = true;
+            chain.latencyBudget = unit.toNanos(budget);
+            return this;
+        }
 
-        private Decorated(final Class<?> value) {
-            this.value = value;
+        @Override
+        public DecorationBindingBuilder<T> to(final Key<? extends T> key) {
+            chain.base = layer(key);
+            return this;
         }
 
-        public static DecoratedBy by(final Class<?> class__) {
-            return new Decorated(class__);
+        @Override
+        public DecorationBindingBuilder<T> to(final Class<? extends T> clazz) {
+            chain.base = layer(Key.get(clazz));
+            return this;
         }
 
         @Override
-        public Class<? extends Annotation> annotationType() {
-            return DecoratedBy.class;
+        public DecorationBindingBuilder<T> to(final Layer<? extends T> layer) {
+            chain.base = layer;
+            return this;
         }
 
         @Override
-        public boolean equals(final Object obj) {
-            if (this == obj) return true;
-            if (obj == null || !(obj instanceof DecoratedBy)) {
-                return false;
-            }
-            final DecoratedBy rhs = (DecoratedBy) obj;
-            return value().equals(rhs.value());
+        public DecorationBindingBuilder<T> toInstance(final T instance) {
+            return toBase(b -> b.toInstance(instance));
         }
 
         @Override
-        public int hashCode() {
-            return 127 * "value".hashCode() ^ value.hashCode();
+        public DecorationBindingBuilder<T> toProvider(final Provider<? extends T> provider) {
+            return toBase(b -> b.toProvider(provider));
         }
 
         @Override
-        public Class<?> value() {
-            return value;
+        public DecorationBindingBuilder<T> toProvider(
+                final Key<? extends javax.inject.Provider<? extends T>> providerKey) {
+            return toBase(b -> b.toProvider(providerKey));
         }
-    }
 
-    private Class targetClass;
-    private Function<
-            com.google.inject.binder.LinkedBindingBuilder,
-            com.google.inject.binder.ScopedBindingBuilder> link;
-    private List<Class> decorators;
-    private Optional<Function<
-            com.google.inject.binder.AnnotatedBindingBuilder,
-            com.google.inject.binder.LinkedBindingBuilder>> annotation =
-            Optional.empty();
-    private Optional<
-            Consumer<com.google.inject.binder.ScopedBindingBuilder>> scope =
-            Optional.empty();
+        /**
+         * Bases that are not reached through a key of their own are bound
+         * under a key of the chain.
+         */
+        private DecorationBindingBuilder<T> toBase(
+                final Consumer<com.google.inject.binder.LinkedBindingBuilder<T>> target) {
+            chain.base = layer(Key.get(
+                    (TypeLiteral<T>) chain.target.getTypeLiteral(),
+                    Internals.named("base of " + chain)));
+            chain.baseTarget = (Consumer) target;
+            return this;
+        }
 
-    public <T> AnnotatedBindingBuilder<T> bind(Class<T> clazz) {
-        targetClass = clazz;
-        return new BindingBuilder<>();
-    }
+        @Override
+        public void in(final Class<? extends Annotation> annotationType) {
+            chain.scoping = Scoping.in(annotationType);
+        }
 
-    @Override
-    public void configure(final Binder binder) {
-        new AbstractModule() {
-            @Override
-            protected void configure() {
-                applyScope(applyAnnotation(bind(targetClass))
-                        .to(decorators.get(0)));
+        @Override
+        public void asEagerSingleton() {
+            chain.scoping = Scoping.EAGER_SINGLETON;
+        }
+
+        @Override
+        public void in(final Scope scope) {
+            chain.scoping = Scoping.in(scope);
+        }
 
-                IntStream.range(1, decorators.size()).forEach(i ->
-                        bind(targetClass)
-                                .annotatedWith(Decorated.by(decorators.get(i - 1)))
-                                .to(decorators.get(i)));
+    }
 
-                applyLink(bind(targetClass)
-                        .annotatedWith(Decorated.by(last(decorators))));
+    private final List<Chain> chains = new ArrayList<>();
+    private boolean warmedUp;
+    private boolean sharesSuffixes;
+
+    /**
+     * Leaves the eager singletons of the chains of this module to
+     * {@link ChainWarmUp}, which builds those that do not depend on each
+     * other in parallel, rather than to the injector, which builds them one
+     * after another while it is created. They are still singletons, built on
+     * first use if that comes before the warm-up.
+     */
+    public void warmUpInParallel() {
+        warmedUp = true;
+    }
 
-            }
-        }.configure(binder);
+    /**
+     * Binds a scoped inner layer once for all the chains of this module that
+     * end in it, that is in the same layers with the same scopes down to the
+     * same base, so that they share one instance of it instead of one each.
+     * Chains bound under several annotations that only differ in their
+     * outer layers then share their common suffix. Built-in, lazy,
+     * instrumented and recorded layers belong to their chain and are not
+     * shared.
+     */
+    public void shareScopedSuffixes() {
+        sharesSuffixes = true;
     }
 
-    private void applyLink(
-            final com.google.inject.binder.LinkedBindingBuilder b) {
-        link.apply(b);
+    public <T> AnnotatedBindingBuilder<T> bind(Class<T> clazz) {
+        final Chain chain = new Chain(callerOf(DecoratorModule.class), Key.get(clazz));
+        chains.add(chain);
+        return new BindingBuilder<>(chain);
     }
 
-    private com.google.inject.binder.LinkedBindingBuilder applyAnnotation(
-            final com.google.inject.binder.AnnotatedBindingBuilder b) {
-        if (!annotation.isPresent()) {
-            return b;
-        }
-        return annotation.get().apply(b);
+    /**
+     * Installs {@code contributions} with every binding of {@code type} it
+     * makes decorated by the same chain: the elements of a
+     * {@code Multibinder<T>}, the values of a {@code MapBinder<K, T>}, or
+     * other bindings of the type. The layers are resolved once for all of
+     * them. Each element keeps its scope unless the chain is scoped; the
+     * layers cannot be scoped on their own. {@code contributions} must not
+     * be installed otherwise.
+     */
+    public <T> DecorationBindingBuilder<T> decorateEach(
+            final Class<T> type,
+            final com.google.inject.Module contributions) {
+        final Chain chain = new Chain(callerOf(DecoratorModule.class), Key.get(type));
+        chain.contributions = contributions;
+        chains.add(chain);
+        return new BindingBuilder<>(chain);
     }
 
-    private void applyScope(
-            final com.google.inject.binder.ScopedBindingBuilder b) {
-        if (scope.isPresent()) {
-            scope.get().accept(b);
+    @Override
+    public void configure(final Binder binder) {
+        final Map<Key<?>, Chain.BindingSpec> specs = new LinkedHashMap<>();
+        final Map<List<Class<?>>, LayerFactory> factories = new HashMap<>();
+        final Map<List<Object>, Key<?>> suffixes = sharesSuffixes ? new HashMap<>() : null;
+        for (final Chain chain : chains) {
+            final Binder chainBinder = binder.withSource(chain.source);
+            if (!chain.validate(chainBinder)) {
+                continue;
+            }
+            chain.warmedUp = warmedUp;
+            for (final Chain.BindingSpec spec : chain.plan(factories, suffixes)) {
+                final Chain.BindingSpec existing = specs.putIfAbsent(spec.key, spec);
+                if (existing == null || existing.definition.equals(spec.definition)) {
+                    continue;
+                }
+                if (existing.key.equals(existing.chain.target)) {
+                    chainBinder.addError(
+                            "%s is already bound by the %s",
+                            spec.key,
+                            existing.chain);
+                } else {
+                    chainBinder.addError(
+                            "%s is bound differently by the %s; "
+                                    + "fuse one of the chains or give the layers "
+                                    + "they share the same scope and base",
+                            spec.key,
+                            existing.chain);
+                }
+            }
+        }
+        for (final Chain.BindingSpec spec : specs.values()) {
+            spec.emitter.accept(binder.withSource(spec.chain.source));
         }
     }
 
-    private static Class<?> last(final List<Class> classes) {
-        return classes.get(classes.size() - 1);
+    /**
+     * Where a chain was declared, for error messages.
+     */
+    private static Object callerOf(final Class<?> module) {
+        for (final StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!element.getClassName().equals(module.getName())) {
+                return element;
+            }
+        }
+        return module;
     }
 }
-
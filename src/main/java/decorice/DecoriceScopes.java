@@ -0,0 +1,32 @@
+package decorice;
+
+import com.google.inject.Scope;
+
+/**
+ * Scopes for decorated chains, to be passed to
+ * {@link DecoratorModule.ScopedBindingBuilder#in(Scope)} or
+ * {@link DecoratorModule.Layer#in(Scope)}.
+ */
+public final class DecoriceScopes {
+
+    private DecoriceScopes() {}
+
+    /**
+     * One instance per injector, like {@link com.google.inject.Scopes#SINGLETON},
+     * but built under a lock of its own rather than one lock shared by every
+     * singleton of the injector, so that threads asking for different
+     * singletons do not wait for each other. Singletons that depend on each
+     * other in a cycle are reported rather than given a circular proxy.
+     */
+    public static final Scope CONCURRENT_SINGLETON = new ConcurrentSingleton();
+
+    /**
+     * One instance per platform thread, reused by every call made on the
+     * thread, for chains whose layers keep state that is not thread-safe.
+     * Virtual threads asking for a binding of an interface share a front
+     * that lends each call an instance from a bounded pool, so that they
+     * neither keep an instance each nor wait for each other; those asking
+     * for a binding of a class get a new instance each time.
+     */
+    public static final Scope THREAD_CONFINED = new ThreadConfined();
+}
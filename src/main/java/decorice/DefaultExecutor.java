@@ -0,0 +1,48 @@
+package decorice;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What built-in layers run calls on unless told otherwise: virtual threads
+ * when the JDK has them, and a bounded pool of daemon threads otherwise,
+ * where a caller runs the call itself when the pool is saturated, unless
+ * the layer refuses to. Created on first use.
+ */
+final class DefaultExecutor {
+
+    private static final int POOL_QUEUE = 1024;
+
+    static final Executor INSTANCE = create();
+
+    private DefaultExecutor() {}
+
+    private static Executor create() {
+        final ExecutorService virtual = Threads.newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        final int threads = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+        final AtomicInteger count = new AtomicInteger();
+        final ThreadFactory factory = r -> {
+            final Thread thread = new Thread(r, "decorice-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(POOL_QUEUE),
+                factory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,171 @@
+package decorice;
+
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.TypeLiteral;
+import com.google.inject.binder.LinkedBindingBuilder;
+import com.google.inject.spi.ConstructorBinding;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderInstanceBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Installs a module with each of its bindings of one type decorated: the
+ * elements of a {@code Multibinder}, the values of a {@code MapBinder}, or
+ * any other binding of the type. What a binding was bound to moves to a key
+ * of its own, and the binding itself provides the layers around it. The
+ * layers are shared by every element, which only adds a binding and a
+ * provider of its own.
+ */
+@SuppressWarnings("unchecked")
+final class EachElement {
+
+    private EachElement() {}
+
+    /**
+     * @param layers   innermost first
+     * @param scoping  the scope of every decorated element, or unscoped to
+     *                 keep the scope each element was bound in
+     */
+    static void install(
+            final Binder binder,
+            final Module contributions,
+            final TypeLiteral<?> type,
+            final List<Function<Object, Object>> layers,
+            final Scoping scoping) {
+        for (final Element element : Elements.getElements(contributions)) {
+            if (element instanceof Binding
+                    && ((Binding<?>) element).getKey().getTypeLiteral().equals(type)) {
+                decorate(binder, (Binding<?>) element, layers, scoping);
+            } else {
+                element.applyTo(binder);
+            }
+        }
+    }
+
+    private static void decorate(
+            final Binder binder,
+            final Binding<?> binding,
+            final List<Function<Object, Object>> layers,
+            final Scoping scoping) {
+        final Key key = binding.getKey();
+        final Key undecorated = Key.get(
+                key.getTypeLiteral(),
+                Internals.named("undecorated " + key));
+        final Binder b = binder.withSource(binding.getSource());
+        if (!binding.acceptTargetVisitor(new Retarget(b.bind(undecorated)))) {
+            b.addError(
+                    "%s cannot be decorated: only bindings to a class, a constructor, "
+                            + "a key, an instance or a provider can",
+                    key);
+            return;
+        }
+        (scoping.isScoped() ? scoping : binding.acceptScopingVisitor(SCOPINGS)).applyTo(
+                b.bind(key).toProvider(new Decorated(layers, b.getProvider(undecorated))));
+    }
+
+    private static final class Decorated implements Provider<Object> {
+        private final List<Function<Object, Object>> layers;
+        private final Provider<?> undecorated;
+
+        private Decorated(
+                final List<Function<Object, Object>> layers,
+                final Provider<?> undecorated) {
+            this.layers = layers;
+            this.undecorated = undecorated;
+        }
+
+        @Override
+        public Object get() {
+            Object instance = undecorated.get();
+            for (final Function<Object, Object> layer : layers) {
+                instance = layer.apply(instance);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Binds a key to what another binding is bound to, and tells whether
+     * it could.
+     */
+    private static final class Retarget extends DefaultBindingTargetVisitor<Object, Boolean> {
+        private final LinkedBindingBuilder builder;
+
+        private Retarget(final LinkedBindingBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public Boolean visit(final InstanceBinding<?> binding) {
+            builder.toInstance(binding.getInstance());
+            return true;
+        }
+
+        @Override
+        public Boolean visit(final ProviderInstanceBinding<?> binding) {
+            builder.toProvider(binding.getProviderInstance());
+            return true;
+        }
+
+        @Override
+        public Boolean visit(final ProviderKeyBinding<?> binding) {
+            builder.toProvider(binding.getProviderKey());
+            return true;
+        }
+
+        @Override
+        public Boolean visit(final LinkedKeyBinding<?> binding) {
+            builder.to(binding.getLinkedKey());
+            return true;
+        }
+
+        @Override
+        public Boolean visit(final ConstructorBinding<?> binding) {
+            builder.toConstructor((Constructor) binding.getConstructor().getMember());
+            return true;
+        }
+
+        @Override
+        protected Boolean visitOther(final Binding<?> binding) {
+            return false;
+        }
+    }
+
+    private static final DefaultBindingScopingVisitor<Scoping> SCOPINGS =
+            new DefaultBindingScopingVisitor<Scoping>() {
+                @Override
+                public Scoping visitEagerSingleton() {
+                    return Scoping.EAGER_SINGLETON;
+                }
+
+                @Override
+                public Scoping visitScope(final Scope scope) {
+                    return Scoping.in(scope);
+                }
+
+                @Override
+                public Scoping visitScopeAnnotation(final Class<? extends Annotation> annotation) {
+                    return Scoping.in(annotation);
+                }
+
+                @Override
+                protected Scoping visitOther() {
+                    return Scoping.UNSCOPED;
+                }
+            };
+}
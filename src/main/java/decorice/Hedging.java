@@ -0,0 +1,168 @@
+package decorice;
+
+import com.google.inject.Binder;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A layer that sends a second call of an idempotent method to the layer
+ * beneath when the first has not answered within a percentile of the
+ * recent latency of the method, and answers with whichever succeeds first.
+ * Declared in {@code decoratedBy} with {@link DecoratorModule#layer(Hedging)}:
+ *
+ * <pre>
+ * layer(Hedging.of("get", "find").percentile(0.95).maximumRate(0.05))
+ * </pre>
+ *
+ * <p>Only the methods named are hedged, and they must be safe to call
+ * twice. A method that returns a {@code CompletableFuture} or a
+ * {@code CompletionStage} is called on the caller's thread, its hedge on the
+ * executor; the other methods are called on the executor while the caller
+ * waits, so that it can answer with the hedge while the first call is still
+ * blocked. Every call of such a method then pays for a handoff to another
+ * thread, hedged or not, once the method has been called enough to be
+ * hedged. The call that loses is cancelled, interrupting it, once the other
+ * has answered. A call that fails before its hedge is sent fails at once;
+ * once both are sent, the caller gets the first to succeed, or the first
+ * failure if both fail.
+ *
+ * <p>The percentile is taken over a window of the last thousand or so calls
+ * of each method, every instance of the layer in a chain binding counting;
+ * until a method has been called fifty times it is called directly, without
+ * hedging. Hedges are kept to a fraction of the calls of each method, a
+ * tenth unless told otherwise, counted over its last hundred calls or so,
+ * so that a slow layer beneath is not sent twice the load.
+ */
+public final class Hedging extends BuiltInLayer {
+
+    private static final double DEFAULT_PERCENTILE = 0.95;
+    private static final double DEFAULT_MAXIMUM_RATE = 0.1;
+
+    private final Set<String> methods;
+    private double percentile = DEFAULT_PERCENTILE;
+    private double maximumRate = DEFAULT_MAXIMUM_RATE;
+    private long minimumDelayNanos;
+    private Executor executor;
+    private Key<? extends Executor> executorKey;
+    private final HedgingStats stats = new HedgingStats();
+
+    private Hedging(final Set<String> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Hedges the methods with these names, which must be idempotent.
+     */
+    public static Hedging of(final String method, final String... more) {
+        final Set<String> methods = new LinkedHashSet<>();
+        methods.add(method);
+        methods.addAll(Arrays.asList(more));
+        return new Hedging(methods);
+    }
+
+    /**
+     * The percentile of the latency of a method after which its calls are
+     * hedged, 0.95 unless told otherwise.
+     */
+    public Hedging percentile(final double percentile) {
+        if (!(percentile > 0 && percentile < 1)) {
+            throw new IllegalArgumentException("Not between 0 and 1: " + percentile);
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * The most hedges sent, as a fraction of the recent calls of each
+     * method, 0.1 unless told otherwise.
+     */
+    public Hedging maximumRate(final double maximumRate) {
+        if (!(maximumRate >= 0 && maximumRate <= 1)) {
+            throw new IllegalArgumentException("Not between 0 and 1: " + maximumRate);
+        }
+        this.maximumRate = maximumRate;
+        return this;
+    }
+
+    /**
+     * Never hedges a call sooner than this, however fast the method has
+     * been.
+     */
+    public Hedging minimumDelay(final long delay, final TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative: " + delay);
+        }
+        this.minimumDelayNanos = unit.toNanos(delay);
+        return this;
+    }
+
+    /**
+     * Runs calls on this executor rather than on virtual threads, or on a
+     * bounded pool before JDK 21.
+     */
+    public Hedging on(final Executor executor) {
+        this.executor = executor;
+        this.executorKey = null;
+        return this;
+    }
+
+    /**
+     * Runs calls on the executor bound to {@code executorKey}.
+     */
+    public Hedging on(final Key<? extends Executor> executorKey) {
+        this.executor = null;
+        this.executorKey = executorKey;
+        return this;
+    }
+
+    /**
+     * Counted over every instance of the layer.
+     */
+    public HedgingStats stats() {
+        return stats;
+    }
+
+    @Override
+    boolean validate(final Binder binder, final Class<?> type) {
+        return checkMethodsReturnValues(binder, type, methods, "hedge");
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final Provider<? extends Executor> provider = executorKey != null
+                ? binder.getProvider(executorKey)
+                : () -> executor != null ? executor : DefaultExecutor.INSTANCE;
+        final Map<Method, HedgingLayer.Delay> delays = new HashMap<>();
+        for (final Method method : methodsReturningValues(type, methods)) {
+            delays.put(method, new HedgingLayer.Delay(percentile, minimumDelayNanos, maximumRate));
+        }
+        return decorated -> Proxies.of(type, new HedgingLayer(
+                decorated,
+                delays,
+                provider.get(),
+                maximumRate,
+                stats));
+    }
+
+    @Override
+    public String toString() {
+        return "Hedging[" + String.join(", ", methods)
+                + ", percentile=" + percentile
+                + ", maximumRate=" + maximumRate
+                + (minimumDelayNanos > 0 ? ", minimumDelay=" + minimumDelayNanos + "ns" : "")
+                + (executorKey != null ? ", on " + executorKey
+                        : executor != null ? ", on " + executor
+                        : "")
+                + "]";
+    }
+}
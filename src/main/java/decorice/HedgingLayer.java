@@ -0,0 +1,431 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Races a second call of a slow idempotent method against the first.
+ */
+final class HedgingLayer implements InvocationHandler {
+
+    private final Object decorated;
+    private final Map<Method, Delay> delays;
+    private final Executor executor;
+    private final double maximumRate;
+    private final HedgingStats stats;
+
+    HedgingLayer(
+            final Object decorated,
+            final Map<Method, Delay> delays,
+            final Executor executor,
+            final double maximumRate,
+            final HedgingStats stats) {
+        this.decorated = decorated;
+        this.delays = delays;
+        this.executor = executor;
+        this.maximumRate = maximumRate;
+        this.stats = stats;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        final Delay delay = delays.get(method);
+        if (delay == null) {
+            return Proxies.call(decorated, method, args);
+        }
+        stats.calls.increment();
+        delay.allowance.increment();
+        final Class<?> returned = method.getReturnType();
+        if (returned == CompletableFuture.class || returned == CompletionStage.class) {
+            return async(delay, method, args);
+        }
+        final long start = System.nanoTime();
+        try {
+            return delay.nanos() < 0 || maximumRate == 0
+                    ? direct(delay, method, args)
+                    : blocking(delay, method, args);
+        } finally {
+            stats.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private Object direct(final Delay delay, final Method method, final Object[] args)
+            throws Throwable {
+        final long start = System.nanoTime();
+        try {
+            return Proxies.call(decorated, method, args);
+        } finally {
+            delay.record(System.nanoTime() - start);
+        }
+    }
+
+    private Object blocking(final Delay delay, final Method method, final Object[] args)
+            throws Throwable {
+        final Race race = new Race();
+        race.start();
+        final List<Future<?>> attempts = new ArrayList<>(2);
+        attempts.add(submit(race, 0, delay, method, args));
+        try {
+            try {
+                return race.result.get(delay.nanos(), TimeUnit.NANOSECONDS);
+            } catch (final TimeoutException e) {
+                if (hedge(delay, race)) {
+                    try {
+                        attempts.add(submit(race, 1, delay, method, args));
+                    } catch (final RejectedExecutionException rejected) {
+                        race.failed(rejected);
+                    }
+                }
+                return race.result.get();
+            }
+        } catch (final ExecutionException e) {
+            throw e.getCause();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException(method + " interrupted while waiting for an answer");
+        } finally {
+            race.cancelled = true;
+            for (int i = 0; i < attempts.size(); i++) {
+                if (i != race.winner) {
+                    attempts.get(i).cancel(true);
+                }
+            }
+        }
+    }
+
+    private Future<?> submit(
+            final Race race,
+            final int attempt,
+            final Delay delay,
+            final Method method,
+            final Object[] args) {
+        final FutureTask<Void> task = new FutureTask<>(() -> {
+            final long start = System.nanoTime();
+            try {
+                race.succeeded(attempt, Proxies.call(decorated, method, args));
+            } catch (final Throwable e) {
+                race.failed(e);
+            } finally {
+                record(delay, race, attempt, start);
+            }
+        }, null);
+        executor.execute(task);
+        return task;
+    }
+
+    private CompletableFuture<Object> async(
+            final Delay delay,
+            final Method method,
+            final Object[] args) {
+        final long start = System.nanoTime();
+        final Race race = new Race();
+        race.start();
+        final List<CompletionStage<?>> attempts = new ArrayList<>(2);
+        call(race, 0, delay, method, args, attempts);
+        final long after = delay.nanos();
+        if (after >= 0 && maximumRate > 0 && !race.result.isDone()) {
+            final Future<?> scheduled = Scheduler.INSTANCE.schedule(() -> {
+                if (!race.result.isDone() && hedge(delay, race)) {
+                    try {
+                        executor.execute(() -> call(race, 1, delay, method, args, attempts));
+                    } catch (final RejectedExecutionException e) {
+                        race.failed(e);
+                    }
+                }
+            }, after, TimeUnit.NANOSECONDS);
+            race.result.whenComplete((value, failure) -> scheduled.cancel(false));
+        }
+        race.result.whenComplete((value, failure) -> {
+            stats.latency.record(System.nanoTime() - start);
+            race.cancelled = true;
+            synchronized (attempts) {
+                for (final CompletionStage<?> attempt : attempts) {
+                    cancel(attempt);
+                }
+            }
+        });
+        return race.result;
+    }
+
+    private void call(
+            final Race race,
+            final int attempt,
+            final Delay delay,
+            final Method method,
+            final Object[] args,
+            final List<CompletionStage<?>> attempts) {
+        final long start = System.nanoTime();
+        final CompletionStage<?> stage;
+        try {
+            stage = (CompletionStage<?>) Proxies.call(decorated, method, args);
+        } catch (final Throwable e) {
+            delay.record(System.nanoTime() - start);
+            race.failed(e);
+            return;
+        }
+        if (stage == null) {
+            delay.record(System.nanoTime() - start);
+            race.succeeded(attempt, null);
+            return;
+        }
+        synchronized (attempts) {
+            attempts.add(stage);
+        }
+        stage.whenComplete((value, failure) -> {
+            record(delay, race, attempt, start);
+            if (failure == null) {
+                race.succeeded(attempt, value);
+            } else {
+                race.failed(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure);
+            }
+        });
+        if (race.result.isDone()) {
+            race.cancelled = true;
+            cancel(stage);
+        }
+    }
+
+    /**
+     * Records how long an attempt took, unless it lost the race and was
+     * cancelled, cutting it short.
+     */
+    private static void record(
+            final Delay delay,
+            final Race race,
+            final int attempt,
+            final long start) {
+        final long nanos = System.nanoTime() - start;
+        if (!race.cancelled || race.winner == attempt) {
+            delay.record(nanos);
+        }
+    }
+
+    /**
+     * Starts the hedge of the call if the maximum rate leaves room for it,
+     * and the call is still unanswered.
+     */
+    private boolean hedge(final Delay delay, final Race race) {
+        if (!delay.allowance.take()) {
+            stats.capped.increment();
+            return false;
+        }
+        if (race.hedge()) {
+            stats.hedged.increment();
+            return true;
+        }
+        delay.allowance.giveBack();
+        return false;
+    }
+
+    private static void cancel(final CompletionStage<?> stage) {
+        try {
+            stage.toCompletableFuture().cancel(true);
+        } catch (final UnsupportedOperationException e) {
+            // the stage cannot be cancelled; its result is ignored
+        }
+    }
+
+    /**
+     * The attempts of one call, and its result: the first attempt to
+     * succeed, or the first failure once every attempt has failed.
+     */
+    private final class Race {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        volatile int winner = -1;
+        /**
+         * Set once the call is answered, before the attempts still running
+         * are cancelled.
+         */
+        volatile boolean cancelled;
+        private int running;
+        private Throwable failure;
+
+        synchronized void start() {
+            running++;
+        }
+
+        /**
+         * Starts the hedge, unless the call is already answered.
+         */
+        synchronized boolean hedge() {
+            if (result.isDone()) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        void succeeded(final int attempt, final Object value) {
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                winner = attempt;
+            }
+            if (result.complete(value) && attempt > 0) {
+                stats.hedgesWon.increment();
+            }
+        }
+
+        synchronized void failed(final Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            if (--running == 0) {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * How long the calls of one method wait before they are hedged: the
+     * percentile of the latency of its recent calls.
+     */
+    static final class Delay {
+        private static final int WINDOW = 1024;
+        private static final int MINIMUM_SAMPLES = 50;
+        /**
+         * One call in this many works the delay out again.
+         */
+        private static final int REFRESH = 32;
+
+        private final double percentile;
+        private final long minimumNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile LatencyHistogram window = new LatencyHistogram();
+        private volatile long nanos = -1;
+        /**
+         * The hedges the calls of the method have earned.
+         */
+        final Allowance allowance;
+
+        Delay(final double percentile, final long minimumNanos, final double maximumRate) {
+            this.percentile = percentile;
+            this.minimumNanos = minimumNanos;
+            this.allowance = new Allowance(maximumRate);
+        }
+
+        /**
+         * Negative until the method has been called enough.
+         */
+        long nanos() {
+            return nanos;
+        }
+
+        void record(final long latency) {
+            window.record(latency);
+            if (nanos < 0 || ThreadLocalRandom.current().nextInt(REFRESH) == 0) {
+                refresh();
+            }
+        }
+
+        /**
+         * Starts a new window once the current one is full; until the new
+         * one has enough calls to go by, the delay stays as it was.
+         */
+        private void refresh() {
+            if (!refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                final LatencyDistribution calls = window.snapshot();
+                if (calls.count() >= MINIMUM_SAMPLES) {
+                    nanos = Math.max(minimumNanos, calls.estimateNanos(percentile));
+                }
+                if (calls.count() >= WINDOW) {
+                    window = new LatencyHistogram();
+                }
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    /**
+     * A bucket of hedges, filled by the maximum rate with each call and
+     * holding no more than the last hundred calls earned, so that calls
+     * that went unhedged for long do not let a burst of stalls be hedged
+     * at a higher rate. The calls are counted on striped counters, and only
+     * added up when a call is about to be hedged.
+     */
+    static final class Allowance {
+        private static final int BURST_CALLS = 100;
+
+        private final double rate;
+        private final double maximum;
+        private final LongAdder calls = new LongAdder();
+        private long callsCounted;
+        private double hedges;
+
+        Allowance(final double rate) {
+            this.rate = rate;
+            this.maximum = Math.max(1, rate * BURST_CALLS);
+        }
+
+        void increment() {
+            calls.increment();
+        }
+
+        /**
+         * Takes a hedge, if the calls so far have earned one.
+         */
+        synchronized boolean take() {
+            final long counted = calls.sum();
+            hedges = Math.min(maximum, hedges + rate * (counted - callsCounted));
+            callsCounted = counted;
+            if (hedges < 1) {
+                return false;
+            }
+            hedges--;
+            return true;
+        }
+
+        /**
+         * Gives back a hedge taken but not sent.
+         */
+        synchronized void giveBack() {
+            hedges = Math.min(maximum, hedges + 1);
+        }
+    }
+
+    /**
+     * Sends the hedges of methods that return a future. Created on first
+     * use.
+     */
+    private static final class Scheduler {
+        static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            final ScheduledThreadPoolExecutor scheduler =
+                    new ScheduledThreadPoolExecutor(1, r -> {
+                        final Thread thread = new Thread(r, "decorice-hedging");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package decorice;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The calls a hedging layer has seen and the hedges it has sent, read
+ * live.
+ */
+public final class HedgingStats {
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder hedged = new LongAdder();
+    final LongAdder hedgesWon = new LongAdder();
+    final LongAdder capped = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    HedgingStats() {
+    }
+
+    /**
+     * The calls of the methods that are hedged.
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * The calls a second call was sent for.
+     */
+    public long hedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * The hedged calls the second call answered first.
+     */
+    public long hedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * The calls that were slow enough to hedge, but were not, to keep the
+     * hedges under the maximum rate.
+     */
+    public long capped() {
+        return capped.sum();
+    }
+
+    /**
+     * How long the calls took for their callers.
+     */
+    public LatencyDistribution latency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "calls=" + calls() + " hedged=" + hedged() + " hedgesWon=" + hedgesWon()
+                + " capped=" + capped() + " latency[" + latency() + "]";
+    }
+}
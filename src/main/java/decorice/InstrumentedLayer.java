@@ -0,0 +1,57 @@
+package decorice;
+
+import com.google.inject.Provider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * Stands in front of one layer of an instrumented chain and records its
+ * calls. Self time is the total time of a call minus the total time of the
+ * calls it made into the instrumented layer beneath it on the same thread.
+ */
+final class InstrumentedLayer implements InvocationHandler {
+
+    /**
+     * Total time spent in nested instrumented calls by the current call.
+     */
+    private static final ThreadLocal<long[]> NESTED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Object layer;
+    private final LayerMetrics metrics;
+
+    private InstrumentedLayer(final Object layer, final LayerMetrics metrics) {
+        this.layer = layer;
+        this.metrics = metrics;
+    }
+
+    static Provider<?> around(
+            final Class<?> type,
+            final Provider<?> layer,
+            final LayerMetrics metrics) {
+        return () -> Proxies.of(type, new InstrumentedLayer(layer.get(), metrics));
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (Proxies.isObjectMethod(method)) {
+            return Proxies.call(layer, method, args);
+        }
+        final long[] nested = NESTED.get();
+        final long outer = nested[0];
+        nested[0] = 0;
+        boolean failed = false;
+        final long start = System.nanoTime();
+        try {
+            return Proxies.call(layer, method, args);
+        } catch (final Throwable e) {
+            failed = true;
+            throw e;
+        } finally {
+            final long total = System.nanoTime() - start;
+            metrics.record(total, total - nested[0], failed);
+            nested[0] = outer + total;
+        }
+    }
+}
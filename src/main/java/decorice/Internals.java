@@ -0,0 +1,46 @@
+package decorice;
+
+import java.lang.annotation.Annotation;
+
+@SuppressWarnings("ClassExplicitlyAnnotation")
+final class Internals implements Internal {
+    private final String value;
+
+    private Internals(final String value) {
+        this.value = value;
+    }
+
+    public static Internal named(final String value) {
+        return new Internals(value);
+    }
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+        return Internal.class;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (obj == null || !(obj instanceof Internal)) {
+            return false;
+        }
+        final Internal rhs = (Internal) obj;
+        return value().equals(rhs.value());
+    }
+
+    @Override
+    public int hashCode() {
+        return 127 * "value".hashCode() ^ value.hashCode();
+    }
+
+    @Override
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "@" + Internal.class.getName() + "(value=" + value + ")";
+    }
+}
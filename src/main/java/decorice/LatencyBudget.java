@@ -0,0 +1,159 @@
+package decorice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the calls of a chain around its optional layers while its latency
+ * nears the budget, and back through them once the load has dropped.
+ *
+ * <p>The latency and the load, the number of calls in flight, are
+ * exponentially weighted averages over recent calls of every instance of the
+ * chain. The optional layers are turned off in the {@link ChainSwitch} of
+ * the chain when the average latency reaches nine tenths of the budget.
+ * Their cost is then measured once, as the drop from that average to the
+ * mean latency of the first calls routed around them, and kept until they
+ * are turned back on. It is expected to grow and shrink with the load; the
+ * layers are turned back on when the latency, with their cost at the
+ * current load added, would stay under seven tenths of the budget. The gap
+ * between the two, and a hold of twenty budgets before turning the layers
+ * back on, keep the chain from switching back and forth. The averages are
+ * updated without locks; a few updates lost to races do not change them
+ * much.
+ */
+final class LatencyBudget {
+
+    /**
+     * The weight of each call in the averages.
+     */
+    private static final double WEIGHT = 0.05;
+    private static final double ROUTE_AROUND_AT = 0.9;
+    private static final double ROUTE_THROUGH_BELOW = 0.7;
+    private static final int HOLD_BUDGETS = 20;
+    /**
+     * The calls routed around the optional layers that their cost is
+     * measured over.
+     */
+    private static final int MEASURED_CALLS = 20;
+
+    private final long budget;
+    private final ChainSwitch chainSwitch;
+    private final List<Class<?>> optional;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double latency;
+    private volatile double load;
+    private volatile boolean routedAround;
+    private volatile boolean measuring;
+
+    /**
+     * What the chain was like when the optional layers were turned off,
+     * and which of them were on then. Written under the lock; those read
+     * by every call without it are volatile.
+     */
+    private double latencyBefore;
+    private volatile double loadBefore;
+    private volatile long routedAroundAt;
+    private List<Class<?>> turnedOff;
+
+    /**
+     * The calls routed around the optional layers so far, while measuring,
+     * and then what the layers added to the latency at the load before.
+     */
+    private int measured;
+    private long measuredNanos;
+    private volatile double cost;
+
+    /**
+     * @param budget   in nanoseconds
+     * @param optional the decorators of the optional layers
+     */
+    LatencyBudget(
+            final long budget,
+            final ChainSwitch chainSwitch,
+            final List<Class<?>> optional) {
+        this.budget = budget;
+        this.chainSwitch = chainSwitch;
+        this.optional = optional;
+    }
+
+    /**
+     * Returns the start of the call.
+     */
+    long enter() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void exit(final long start) {
+        final long now = System.nanoTime();
+        final int calls = inFlight.getAndDecrement();
+        final double latency = this.latency + WEIGHT * (now - start - this.latency);
+        final double load = this.load + WEIGHT * (calls - this.load);
+        this.latency = latency;
+        this.load = load;
+        if (!routedAround) {
+            if (latency >= ROUTE_AROUND_AT * budget) {
+                routeAround(now, latency, load);
+            }
+        } else if (measuring) {
+            measure(start, now);
+        } else if (now - routedAroundAt >= HOLD_BUDGETS * budget
+                && latency + cost(load) < ROUTE_THROUGH_BELOW * budget) {
+            routeThrough(latency, load);
+        }
+    }
+
+    /**
+     * What the optional layers would add to the latency at this load.
+     */
+    private double cost(final double load) {
+        return loadBefore > 0 ? cost * load / loadBefore : cost;
+    }
+
+    /**
+     * Adds a call to the measure of the cost of the optional layers, if it
+     * started after they were turned off.
+     */
+    private synchronized void measure(final long start, final long now) {
+        if (!measuring || start < routedAroundAt) {
+            return;
+        }
+        measuredNanos += now - start;
+        if (++measured == MEASURED_CALLS) {
+            cost = Math.max(0, latencyBefore - (double) measuredNanos / measured);
+            measuring = false;
+        }
+    }
+
+    private synchronized void routeAround(final long now, final double latency, final double load) {
+        if (routedAround) {
+            return;
+        }
+        turnedOff = new ArrayList<>();
+        for (final Class<?> decorator : optional) {
+            if (chainSwitch.isEnabled(decorator)) {
+                turnedOff.add(decorator);
+                chainSwitch.disable(decorator);
+            }
+        }
+        latencyBefore = latency;
+        loadBefore = load;
+        routedAroundAt = now;
+        measured = 0;
+        measuredNanos = 0;
+        measuring = true;
+        routedAround = true;
+    }
+
+    private synchronized void routeThrough(final double latency, final double load) {
+        if (!routedAround || measuring || latency + cost(load) >= ROUTE_THROUGH_BELOW * budget) {
+            return;
+        }
+        for (final Class<?> decorator : turnedOff) {
+            chainSwitch.enable(decorator);
+        }
+        routedAround = false;
+    }
+}
@@ -0,0 +1,76 @@
+package decorice;
+
+import java.util.Arrays;
+
+/**
+ * A point-in-time copy of a latency histogram. Percentiles are upper bounds,
+ * accurate to a power of two.
+ */
+public final class LatencyDistribution {
+
+    private final long[] counts;
+    private final long count;
+    private final long sumNanos;
+
+    LatencyDistribution(final long[] counts, final long sumNanos) {
+        this.counts = counts;
+        this.count = Arrays.stream(counts).sum();
+        this.sumNanos = sumNanos;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double meanNanos() {
+        return count == 0 ? 0 : (double) sumNanos / count;
+    }
+
+    /**
+     * @param quantile in [0, 1], e.g. 0.99
+     */
+    public long percentileNanos(final double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Like {@link #percentileNanos(double)}, placed within its power of two
+     * by assuming the values spread evenly over it.
+     */
+    long estimateNanos(final double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = counts[0];
+        if (seen >= rank) {
+            return 0;
+        }
+        for (int i = 1; i < counts.length; i++) {
+            if (seen + counts[i] >= rank) {
+                final long low = 1L << (i - 1);
+                return low + (long) (low * (double) (rank - seen) / counts[i]) - 1;
+            }
+            seen += counts[i];
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "count=%d mean=%.0fns p50<=%dns p99<=%dns",
+                count, meanNanos(), percentileNanos(0.5), percentileNanos(0.99));
+    }
+}
@@ -0,0 +1,42 @@
+package decorice;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with one striped counter per power of two
+ * nanoseconds.
+ */
+final class LatencyHistogram {
+
+    static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        sum.add(value);
+    }
+
+    LatencyDistribution snapshot() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new LatencyDistribution(counts, sum.sum());
+    }
+
+    /**
+     * Bucket {@code i} holds values below {@code 2^i}.
+     */
+    static int bucket(final long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+}
@@ -0,0 +1,71 @@
+package decorice;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A sampled call of one layer of a recorded chain. Only
+ * {@link RecordedLayer} touches this class, and only on a JDK with Flight
+ * Recorder.
+ */
+@Name("decorice.LayerCall")
+@Label("Layer Call")
+@Category("decorice")
+@Description("A sampled call of one layer of a decorator chain, including the layers beneath it")
+final class LayerCallEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(LayerCallEvent.class);
+
+    @Label("Key")
+    String key;
+
+    @Label("Layer")
+    String layer;
+
+    @Label("Decorated By")
+    @Description("The decorator of the layer, as named by @DecoratedBy, or the class of a "
+            + "built-in layer; none for the base")
+    Class<?> decoratedBy;
+
+    @Label("Index")
+    @Description("The position of the layer in its chain, 0 being the outermost")
+    int index;
+
+    @Label("Method")
+    String method;
+
+    private LayerCallEvent() {}
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static Object start() {
+        final LayerCallEvent event = new LayerCallEvent();
+        event.begin();
+        return event;
+    }
+
+    static void finish(
+            final Object begun,
+            final String key,
+            final String layer,
+            final Class<?> decoratedBy,
+            final int index,
+            final String method) {
+        final LayerCallEvent event = (LayerCallEvent) begun;
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.layer = layer;
+            event.decoratedBy = decoratedBy;
+            event.index = index;
+            event.method = method;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package decorice;
+
+import com.google.inject.Binder;
+import com.google.inject.BindingAnnotation;
+import com.google.inject.Key;
+import com.google.inject.MembersInjector;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+
+import javax.inject.Qualifier;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * Builds one decorator around an already built instance, bypassing the
+ * {@code @DecoratedBy} key lookup. The constructor is resolved when the
+ * module is configured; its other parameters and any injectable members are
+ * still provided by the injector.
+ */
+@SuppressWarnings("unchecked")
+final class LayerFactory {
+
+    private final Class<?> decorator;
+    private final MethodHandle constructor;
+    private final int decoratedIndex;
+    private final Provider<?>[] dependencies;
+    private final MembersInjector<Object> membersInjector;
+
+    private LayerFactory(
+            final Class<?> decorator,
+            final MethodHandle constructor,
+            final int decoratedIndex,
+            final Provider<?>[] dependencies,
+            final MembersInjector<Object> membersInjector) {
+        this.decorator = decorator;
+        this.constructor = constructor;
+        this.decoratedIndex = decoratedIndex;
+        this.dependencies = dependencies;
+        this.membersInjector = membersInjector;
+    }
+
+    /**
+     * Returns {@code null} after reporting the problem on the binder when
+     * {@code decorator} cannot decorate {@code type}.
+     */
+    static LayerFactory of(
+            final Binder binder,
+            final Class<?> type,
+            final Class<?> decorator) {
+        final Constructor<?> ctor = injectableConstructor(decorator);
+        if (ctor == null) {
+            binder.addError(
+                    "%s has no constructor annotated with @Inject",
+                    decorator.getName());
+            return null;
+        }
+        final Type[] parameterTypes = ctor.getGenericParameterTypes();
+        final Annotation[][] parameterAnnotations = ctor.getParameterAnnotations();
+        final Provider<?>[] dependencies = new Provider<?>[parameterTypes.length];
+        int decoratedIndex = -1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            final Annotation qualifier = qualifier(parameterAnnotations[i]);
+            if (qualifier instanceof DecoratedBy
+                    && ((DecoratedBy) qualifier).value() == decorator
+                    && ctor.getParameterTypes()[i] == type) {
+                decoratedIndex = i;
+            } else {
+                dependencies[i] = binder.getProvider(
+                        dependencyKey(parameterTypes[i], qualifier));
+            }
+        }
+        if (decoratedIndex < 0) {
+            binder.addError(
+                    "%s has no %s parameter annotated with @DecoratedBy(%s.class)",
+                    ctor,
+                    type.getName(),
+                    decorator.getSimpleName());
+            return null;
+        }
+        ctor.setAccessible(true);
+        final MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(ctor)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (final IllegalAccessException e) {
+            binder.addError(e);
+            return null;
+        }
+        return new LayerFactory(
+                decorator,
+                handle,
+                decoratedIndex,
+                dependencies,
+                hasInjectableMembers(decorator)
+                        ? (MembersInjector<Object>) binder.getMembersInjector(decorator)
+                        : null);
+    }
+
+    Class<?> decorator() {
+        return decorator;
+    }
+
+    Object create(final Object decorated) {
+        final Object[] args = new Object[dependencies.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = i == decoratedIndex ? decorated : dependencies[i].get();
+        }
+        final Object instance;
+        try {
+            instance = constructor.invokeExact(args);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new ProvisionException("Error constructing " + decorator.getName(), e);
+        }
+        if (membersInjector != null) {
+            membersInjector.injectMembers(instance);
+        }
+        return instance;
+    }
+
+    private static Constructor<?> injectableConstructor(final Class<?> decorator) {
+        for (final Constructor<?> ctor : decorator.getDeclaredConstructors()) {
+            if (isInjectable(ctor)) {
+                return ctor;
+            }
+        }
+        return null;
+    }
+
+    private static Key<?> dependencyKey(
+            final Type type,
+            final Annotation qualifier) {
+        return qualifier == null ? Key.get(type) : Key.get(type, qualifier);
+    }
+
+    private static Annotation qualifier(final Annotation[] annotations) {
+        for (final Annotation annotation : annotations) {
+            final Class<? extends Annotation> type = annotation.annotationType();
+            if (type.isAnnotationPresent(BindingAnnotation.class)
+                    || type.isAnnotationPresent(Qualifier.class)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasInjectableMembers(final Class<?> decorator) {
+        for (Class<?> c = decorator; c != Object.class; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (isInjectable(field)) return true;
+            }
+            for (final Method method : c.getDeclaredMethods()) {
+                if (isInjectable(method)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInjectable(final AccessibleObject member) {
+        return member.isAnnotationPresent(javax.inject.Inject.class)
+                || member.isAnnotationPresent(com.google.inject.Inject.class);
+    }
+}
@@ -0,0 +1,34 @@
+package decorice;
+
+import java.util.concurrent.atomic.LongAdder;
+
+final class LayerMetrics {
+
+    final String layer;
+    final LongAdder calls = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LatencyHistogram totalTime = new LatencyHistogram();
+    final LatencyHistogram selfTime = new LatencyHistogram();
+
+    LayerMetrics(final String layer) {
+        this.layer = layer;
+    }
+
+    void record(final long totalNanos, final long selfNanos, final boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        totalTime.record(totalNanos);
+        selfTime.record(selfNanos);
+    }
+
+    LayerSnapshot snapshot() {
+        return new LayerSnapshot(
+                layer,
+                calls.sum(),
+                errors.sum(),
+                totalTime.snapshot(),
+                selfTime.snapshot());
+    }
+}
@@ -0,0 +1,25 @@
+package decorice;
+
+import com.google.inject.Provider;
+
+import java.util.function.Function;
+
+/**
+ * Provides one layer of a fused chain around whatever the provider beneath
+ * it provides.
+ */
+final class LayerProvider implements Provider<Object> {
+
+    private final Function<Object, Object> layer;
+    private final Provider<?> below;
+
+    LayerProvider(final Function<Object, Object> layer, final Provider<?> below) {
+        this.layer = layer;
+        this.below = below;
+    }
+
+    @Override
+    public Object get() {
+        return layer.apply(below.get());
+    }
+}
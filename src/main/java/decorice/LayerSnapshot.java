@@ -0,0 +1,56 @@
+package decorice;
+
+/**
+ * What one layer of an instrumented chain has done so far. Total time
+ * includes the layers beneath; self time does not.
+ */
+public final class LayerSnapshot {
+
+    private final String layer;
+    private final long calls;
+    private final long errors;
+    private final LatencyDistribution totalTime;
+    private final LatencyDistribution selfTime;
+
+    LayerSnapshot(
+            final String layer,
+            final long calls,
+            final long errors,
+            final LatencyDistribution totalTime,
+            final LatencyDistribution selfTime) {
+        this.layer = layer;
+        this.calls = calls;
+        this.errors = errors;
+        this.totalTime = totalTime;
+        this.selfTime = selfTime;
+    }
+
+    /**
+     * The decorator class name, or the base key for the innermost layer.
+     */
+    public String layer() {
+        return layer;
+    }
+
+    public long calls() {
+        return calls;
+    }
+
+    public long errors() {
+        return errors;
+    }
+
+    public LatencyDistribution totalTime() {
+        return totalTime;
+    }
+
+    public LatencyDistribution selfTime() {
+        return selfTime;
+    }
+
+    @Override
+    public String toString() {
+        return layer + ": calls=" + calls + " errors=" + errors
+                + " total[" + totalTime + "] self[" + selfTime + "]";
+    }
+}
@@ -0,0 +1,56 @@
+package decorice;
+
+import com.google.inject.Provider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * Stands in for a lazy layer of a chain and builds it, with everything
+ * beneath it, on the first call of one of its methods. A stub compares and
+ * hashes by identity, so it can be put in collections before it is built.
+ */
+final class LazyLayer implements InvocationHandler {
+
+    private final Provider<?> layer;
+    private volatile Object instance;
+
+    private LazyLayer(final Provider<?> layer) {
+        this.layer = layer;
+    }
+
+    static Provider<?> around(final Class<?> type, final Provider<?> layer) {
+        return () -> Proxies.of(type, new LazyLayer(layer));
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (Proxies.isObjectMethod(method)) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    final Object built = instance;
+                    return built == null ? "lazy " + layer : Proxies.call(built, method, args);
+            }
+        }
+        return Proxies.call(instance(), method, args);
+    }
+
+    private Object instance() {
+        Object built = instance;
+        if (built == null) {
+            synchronized (this) {
+                built = instance;
+                if (built == null) {
+                    built = layer.get();
+                    instance = built;
+                }
+            }
+        }
+        return built;
+    }
+}
@@ -0,0 +1,159 @@
+package decorice;
+
+import com.google.inject.Binder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A layer that caches what the methods of a chain return, by their
+ * arguments, declared in {@code decoratedBy} with
+ * {@link DecoratorModule#layer(Memoization)}:
+ *
+ * <pre>
+ * bind(Foo.class)
+ *         .to(D0.class)
+ *         .decoratedBy(
+ *                 layer(D2.class),
+ *                 layer(Memoization.of("find").maximumSize(10_000).expireAfterWrite(5, MINUTES)),
+ *                 layer(D1.class));
+ * </pre>
+ *
+ * <p>Each instance of the layer has a cache of its own; see "Built-in
+ * layers" in the README on scoping it. Caches are bounded, 10,000 entries
+ * unless told otherwise, and evict with a segmented LRU policy: entries hit
+ * once more after they were cached are protected from the scans of entries
+ * that are not. Exceptions are not cached.
+ */
+public final class Memoization extends BuiltInLayer {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Set<String> methods;
+    private long maximumWeight = DEFAULT_MAXIMUM_SIZE;
+    private ToLongFunction<Object> weigher;
+    private long expireAfterWriteNanos;
+    private boolean offHeap;
+    private final Map<Method, MemoizationStats> stats = new LinkedHashMap<>();
+
+    private Memoization(final Set<String> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Memoizes the methods with these names, or every method that returns
+     * something if none is given.
+     */
+    public static Memoization of(final String... methods) {
+        return new Memoization(new LinkedHashSet<>(Arrays.asList(methods)));
+    }
+
+    public Memoization maximumSize(final long maximumSize) {
+        checkPositive(maximumSize);
+        this.maximumWeight = maximumSize;
+        this.weigher = null;
+        return this;
+    }
+
+    /**
+     * Bounds the total weight of the cached values instead of their number.
+     */
+    public Memoization maximumWeight(
+            final long maximumWeight,
+            final ToLongFunction<Object> weigher) {
+        checkPositive(maximumWeight);
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Forgets values this long after they were cached.
+     */
+    public Memoization expireAfterWrite(final long duration, final TimeUnit unit) {
+        checkPositive(duration);
+        this.expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Keeps the values serialized in direct buffers, out of the heap the
+     * garbage collector scans, and deserializes them on every hit. Values
+     * must be {@link java.io.Serializable}; those that are not are not
+     * cached. Unless a weigher is given, the maximum is then a number of
+     * serialized bytes.
+     */
+    public Memoization offHeap() {
+        this.offHeap = true;
+        return this;
+    }
+
+    /**
+     * Hits, misses and evictions by method, overloads apart, counted over
+     * every cache built for this memoization.
+     */
+    public Map<Method, MemoizationStats> stats() {
+        synchronized (stats) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(stats));
+        }
+    }
+
+    @Override
+    boolean validate(final Binder binder, final Class<?> type) {
+        return checkMethodsReturnValues(binder, type, methods, "memoize");
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final Map<Method, MemoizationStats> memoized = new LinkedHashMap<>();
+        for (final Method method : methodsReturningValues(type, methods)) {
+            memoized.put(method, statsOf(method));
+        }
+        return decorated -> Proxies.of(type, new MemoizingLayer(
+                decorated,
+                memoized,
+                new SegmentedLru(
+                        maximumWeight,
+                        weigher,
+                        expireAfterWriteNanos,
+                        offHeap,
+                        type.getClassLoader())));
+    }
+
+    private MemoizationStats statsOf(final Method method) {
+        synchronized (stats) {
+            return stats.computeIfAbsent(method, MemoizationStats::new);
+        }
+    }
+
+    private static void checkPositive(final long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Not positive: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final List<String> settings = new ArrayList<>();
+        settings.add(methods.isEmpty() ? "all methods" : String.join(", ", methods));
+        settings.add((weigher == null && !offHeap ? "maximumSize=" : "maximumWeight=")
+                + maximumWeight);
+        if (expireAfterWriteNanos > 0) {
+            settings.add("expireAfterWrite=" + expireAfterWriteNanos + "ns");
+        }
+        if (offHeap) {
+            settings.add("offHeap");
+        }
+        return "Memoization" + settings;
+    }
+}
@@ -0,0 +1,61 @@
+package decorice;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counts of one memoized method, read live.
+ */
+public final class MemoizationStats {
+
+    private final Method method;
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    MemoizationStats(final Method method) {
+        this.method = method;
+    }
+
+    public Method method() {
+        return method;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Values dropped to stay within the maximum; expired values are counted
+     * as misses, not evictions.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 0 until the method has been called.
+     */
+    public double hitRate() {
+        final long hits = hits();
+        final long requests = hits + misses();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder name = new StringBuilder(method.getName()).append('(');
+        final Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            name.append(i > 0 ? ", " : "").append(parameters[i].getSimpleName());
+        }
+        return name.append("): hits=").append(hits())
+                .append(" misses=").append(misses())
+                .append(" evictions=").append(evictions())
+                .toString();
+    }
+}
@@ -0,0 +1,44 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Answers the memoized methods of a chain from its cache, calling the layer
+ * beneath on a miss.
+ */
+final class MemoizingLayer implements InvocationHandler {
+
+    private final Object decorated;
+    private final Map<Method, MemoizationStats> memoized;
+    private final SegmentedLru cache;
+
+    MemoizingLayer(
+            final Object decorated,
+            final Map<Method, MemoizationStats> memoized,
+            final SegmentedLru cache) {
+        this.decorated = decorated;
+        this.memoized = memoized;
+        this.cache = cache;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        final MemoizationStats stats = memoized.get(method);
+        if (stats == null) {
+            return Proxies.call(decorated, method, args);
+        }
+        final MethodCall call = new MethodCall(method, args);
+        final Object cached = cache.get(call);
+        if (cached != null) {
+            stats.hits.increment();
+            return cached == SegmentedLru.NULL ? null : cached;
+        }
+        stats.misses.increment();
+        final Object value = Proxies.call(decorated, method, args);
+        cache.put(call, value, stats);
+        return value;
+    }
+}
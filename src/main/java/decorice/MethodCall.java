@@ -0,0 +1,42 @@
+package decorice;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * A method and its arguments, compared deeply so that array arguments are
+ * compared by content. What built-in layers key calls by.
+ */
+final class MethodCall {
+
+    private final Method method;
+    private final Object[] args;
+    private final int hash;
+
+    MethodCall(final Method method, final Object[] args) {
+        this.method = method;
+        this.args = args == null ? new Object[0] : args.clone();
+        this.hash = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof MethodCall)) {
+            return false;
+        }
+        final MethodCall other = (MethodCall) obj;
+        return hash == other.hash
+                && method.equals(other.method)
+                && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return method.getName() + Arrays.deepToString(args);
+    }
+}
@@ -0,0 +1,89 @@
+package decorice;
+
+import com.google.inject.Binder;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A layer that runs the calls of a chain on an executor, declared in
+ * {@code decoratedBy} with {@link DecoratorModule#layer(Offloading)}.
+ *
+ * <p>A method that returns a {@code CompletableFuture} or a
+ * {@code CompletionStage} returns at once; its future completes with the
+ * stage the layer beneath returns. Other methods are called on the caller's
+ * thread, unless given a {@link #timeout(long, TimeUnit) timeout}: they then
+ * run on the executor while the caller waits for them, at most that long.
+ * Such a call fails with a {@code RejectedExecutionException} when the
+ * executor runs it on the caller's thread, where it could not time out, and
+ * with a {@code CancellationException}, cancelling it, when the caller is
+ * interrupted while it waits.
+ *
+ * <p>Unless told otherwise, calls run on virtual threads when the JDK has
+ * them, and on a bounded pool of daemon threads otherwise, where a caller
+ * runs the call itself when the pool is saturated, or has it rejected when
+ * the call has a timeout.
+ */
+public final class Offloading extends BuiltInLayer {
+
+    private final Executor executor;
+    private final Key<? extends Executor> executorKey;
+    private long timeoutNanos;
+
+    private Offloading(final Executor executor, final Key<? extends Executor> executorKey) {
+        this.executor = executor;
+        this.executorKey = executorKey;
+    }
+
+    /**
+     * Offloads to virtual threads, or to a bounded pool before JDK 21.
+     */
+    public static Offloading create() {
+        return new Offloading(null, null);
+    }
+
+    public static Offloading on(final Executor executor) {
+        return new Offloading(executor, null);
+    }
+
+    /**
+     * Offloads to the executor bound to {@code executorKey}.
+     */
+    public static Offloading on(final Key<? extends Executor> executorKey) {
+        return new Offloading(null, executorKey);
+    }
+
+    /**
+     * Runs the methods that do not return a future on the executor as well,
+     * failing those that take longer than this with an
+     * {@link OffloadingTimeoutException} and interrupting them.
+     */
+    public Offloading timeout(final long timeout, final TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Not positive: " + timeout);
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    @Override
+    Function<Object, Object> layer(final Binder binder, final Class<?> type) {
+        final Provider<? extends Executor> provider = executorKey != null
+                ? binder.getProvider(executorKey)
+                : () -> executor != null ? executor : DefaultExecutor.INSTANCE;
+        return decorated -> Proxies.of(
+                type,
+                new OffloadingLayer(decorated, provider.get(), timeoutNanos));
+    }
+
+    @Override
+    public String toString() {
+        return "Offloading[" + (executorKey != null ? executorKey
+                : executor != null ? executor
+                : "default executor")
+                + (timeoutNanos > 0 ? ", timeout=" + timeoutNanos + "ns" : "") + "]";
+    }
+}
@@ -0,0 +1,105 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the calls of a chain on an executor.
+ */
+final class OffloadingLayer implements InvocationHandler {
+
+    private final Object decorated;
+    private final Executor executor;
+    private final long timeoutNanos;
+
+    OffloadingLayer(final Object decorated, final Executor executor, final long timeoutNanos) {
+        this.decorated = decorated;
+        this.executor = executor;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (Proxies.isObjectMethod(method)) {
+            return Proxies.call(decorated, method, args);
+        }
+        final Class<?> returned = method.getReturnType();
+        if (returned == CompletableFuture.class || returned == CompletionStage.class) {
+            return async(method, args);
+        }
+        if (timeoutNanos > 0) {
+            return withTimeout(method, args);
+        }
+        return Proxies.call(decorated, method, args);
+    }
+
+    private CompletableFuture<Object> async(final Method method, final Object[] args) {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                final CompletionStage<?> stage =
+                        (CompletionStage<?>) Proxies.call(decorated, method, args);
+                if (stage == null) {
+                    result.complete(null);
+                    return;
+                }
+                stage.whenComplete((value, failure) -> {
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (final Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Fails the call rather than run it past its timeout on the caller's
+     * thread, as an executor that is saturated may do.
+     */
+    private Object withTimeout(final Method method, final Object[] args) throws Throwable {
+        final Thread caller = Thread.currentThread();
+        final FutureTask<Object> task = new FutureTask<>(() -> {
+            if (Thread.currentThread() == caller) {
+                throw new RejectedExecutionException(method
+                        + " cannot time out on the caller's thread; the executor ran it there");
+            }
+            try {
+                return Proxies.call(decorated, method, args);
+            } catch (final Exception | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new ExecutionException(e);
+            }
+        });
+        executor.execute(task);
+        try {
+            return task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            task.cancel(true);
+            throw new OffloadingTimeoutException(
+                    method + " did not return within "
+                            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+        } catch (final ExecutionException e) {
+            throw e.getCause();
+        } catch (final InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException(method + " interrupted while waiting for an answer");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package decorice;
+
+/**
+ * Thrown to the caller of an offloaded method that did not return within
+ * the timeout of its {@link Offloading} layer.
+ */
+public class OffloadingTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    OffloadingTimeoutException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package decorice;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Marks a decorator method that only forwards to the decorated instance,
+ * unchanged. Chains generated by {@code decorice-processor} call such methods
+ * directly on the first layer beneath that does more than forward; a
+ * decorator inheriting a marked method from a forwarding base class is
+ * treated the same way.
+ */
+@Target(METHOD) @Retention(CLASS)
+public @interface PassThrough {}
@@ -0,0 +1,47 @@
+package decorice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * What the layers decorice puts in front of a chain's own layers have in
+ * common: they implement the bound interface with a dynamic proxy and
+ * forward to the instance they stand for.
+ */
+final class Proxies {
+
+    private Proxies() {}
+
+    static Object of(final Class<?> type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[] {type},
+                handler);
+    }
+
+    /**
+     * Calls {@code method} on {@code target}, rethrowing whatever the method
+     * throws as is. A method of an interface that is not public is made
+     * accessible on its first call; proxies pass the same {@code Method} to
+     * every call, so later ones find it so.
+     */
+    static Object call(final Object target, final Method method, final Object[] args)
+            throws Throwable {
+        try {
+            try {
+                return method.invoke(target, args);
+            } catch (final IllegalAccessException e) {
+                method.setAccessible(true);
+                return method.invoke(target, args);
+            }
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static boolean isObjectMethod(final Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+}
@@ -0,0 +1,236 @@
+package decorice;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Stands in front of one layer of a recorded chain and emits its Java
+ * Flight Recorder events: the time the layer took to build, which the
+ * outermost layer commits for the whole chain, or the composition for a
+ * switchable one, and sampled calls.
+ *
+ * <p>Whether an event type is enabled is asked of Flight Recorder each
+ * time, so that recordings can turn each type on and off while the
+ * application runs. A layer is only put behind a proxy when call events are
+ * enabled as it is built; otherwise its instance is handed out as is.
+ */
+final class RecordedLayer implements InvocationHandler {
+
+    /**
+     * Whether the running JDK has Flight Recorder. decorice is built for
+     * Java 8, which may not, so the event classes are only loaded when it
+     * does.
+     */
+    static final boolean AVAILABLE = available();
+
+    /**
+     * The chain being built by the current thread, innermost first.
+     */
+    private static final ThreadLocal<Provision> PROVISION = new ThreadLocal<>();
+
+    private final Object layer;
+    private final Recording recording;
+    private final int index;
+
+    private RecordedLayer(final Object layer, final Recording recording, final int index) {
+        this.layer = layer;
+        this.recording = recording;
+        this.index = index;
+    }
+
+    static Provider<?> around(
+            final Class<?> type,
+            final Provider<?> layer,
+            final Recording recording,
+            final int index) {
+        final boolean calls = type.isInterface() && recording.sampling > 0;
+        return () -> {
+            final Object instance = provision(layer, recording, index);
+            return calls && LayerCallEvent.enabled()
+                    ? Proxies.of(type, new RecordedLayer(instance, recording, index))
+                    : instance;
+        };
+    }
+
+    /**
+     * Builds layer {@code index}, timing it when the chain is being built
+     * from its outermost layer.
+     */
+    private static Object provision(
+            final Provider<?> layer,
+            final Recording recording,
+            final int index) {
+        if (!ChainProvisionEvent.enabled()) {
+            return layer.get();
+        }
+        final Provision outer = PROVISION.get();
+        final boolean within = outer != null
+                && outer.recording == recording
+                && (index > 0 || outer.composition);
+        if (index > 0 && !within) {
+            return layer.get();
+        }
+        final Provision provision = within
+                ? new Provision(recording, outer.nanos, null)
+                : new Provision(
+                        recording,
+                        new long[recording.names.size()],
+                        ChainProvisionEvent.start());
+        PROVISION.set(provision);
+        final long start = System.nanoTime();
+        final Object instance;
+        try {
+            instance = layer.get();
+        } finally {
+            PROVISION.set(outer);
+        }
+        final long total = System.nanoTime() - start;
+        provision.nanos[index] = total - provision.nested;
+        if (within) {
+            outer.nested += total;
+        } else {
+            ChainProvisionEvent.finish(
+                    provision.event,
+                    recording.key,
+                    recording.names.size() - 1,
+                    recording.describe(provision.nanos));
+        }
+        return instance;
+    }
+
+    /**
+     * Composes a switchable chain, whose layers are built one after
+     * another rather than each within the one above, timing each layer
+     * built and committing one event for the composition. The layers it
+     * keeps from the last composition, or leaves out, were not built.
+     */
+    static <T> T compose(final Recording recording, final Supplier<T> composition) {
+        if (!ChainProvisionEvent.enabled()) {
+            return composition.get();
+        }
+        final long[] nanos = new long[recording.names.size()];
+        Arrays.fill(nanos, -1);
+        final Provision outer = PROVISION.get();
+        final Provision provision = new Provision(recording, nanos, ChainProvisionEvent.start());
+        provision.composition = true;
+        PROVISION.set(provision);
+        final T composed;
+        try {
+            composed = composition.get();
+        } finally {
+            PROVISION.set(outer);
+        }
+        ChainProvisionEvent.finish(
+                provision.event,
+                recording.key,
+                recording.names.size() - 1,
+                recording.describe(nanos));
+        return composed;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (Proxies.isObjectMethod(method)
+                || !recording.sampled()
+                || !LayerCallEvent.enabled()) {
+            return Proxies.call(layer, method, args);
+        }
+        final Object event = LayerCallEvent.start();
+        try {
+            return Proxies.call(layer, method, args);
+        } finally {
+            LayerCallEvent.finish(
+                    event,
+                    recording.key,
+                    recording.names.get(index),
+                    recording.kinds.get(index),
+                    index,
+                    method.getName());
+        }
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * What a recorded chain tells Flight Recorder about itself.
+     */
+    static final class Recording {
+        private final String key;
+        private final List<String> names;
+        private final List<Class<?>> kinds;
+        private final int sampling;
+
+        /**
+         * @param names    of the layers, outermost first, down to the base
+         * @param kinds    the decorator of each layer, or {@code null}
+         * @param sampling one call in how many of each layer is recorded,
+         *                 or 0 for none
+         */
+        Recording(
+                final Key<?> key,
+                final List<String> names,
+                final List<Class<?>> kinds,
+                final int sampling) {
+            this.key = key.toString();
+            this.names = names;
+            this.kinds = kinds;
+            this.sampling = sampling;
+        }
+
+        private boolean sampled() {
+            return sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0;
+        }
+
+        private String describe(final long[] nanos) {
+            final StringBuilder layers = new StringBuilder();
+            for (int i = 0; i < nanos.length; i++) {
+                if (i > 0) {
+                    layers.append(", ");
+                }
+                layers.append(names.get(i)).append(' ');
+                if (nanos[i] < 0) {
+                    layers.append("not built");
+                } else {
+                    layers.append(nanos[i]).append(" ns");
+                }
+            }
+            return layers.toString();
+        }
+    }
+
+    private static final class Provision {
+        final Recording recording;
+        final long[] nanos;
+        final Object event;
+        /**
+         * Total time spent building the layers beneath the current one.
+         */
+        long nested;
+        /**
+         * Whether this is the composition of a switchable chain, which
+         * builds every layer, the outermost included, within it.
+         */
+        boolean composition;
+
+        Provision(final Recording recording, final long[] nanos, final Object event) {
+            this.recording = recording;
+            this.nanos = nanos;
+            this.event = event;
+        }
+    }
+}
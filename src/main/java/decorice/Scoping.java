@@ -0,0 +1,68 @@
+package decorice;
+
+import com.google.inject.Scope;
+import com.google.inject.binder.ScopedBindingBuilder;
+
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+
+/**
+ * How a binding of a chain is scoped. Unlike the Guice builder calls it
+ * stands for, two scopings can be compared, which is how chains that share
+ * a binding are told apart from chains that conflict on it.
+ */
+final class Scoping {
+
+    static final Scoping UNSCOPED = new Scoping("unscoped");
+    static final Scoping EAGER_SINGLETON = new Scoping("asEagerSingleton");
+
+    private final Object value;
+
+    private Scoping(final Object value) {
+        this.value = value;
+    }
+
+    static Scoping in(final Class<? extends Annotation> annotationType) {
+        return new Scoping(annotationType);
+    }
+
+    static Scoping in(final Scope scope) {
+        return new Scoping(scope);
+    }
+
+    boolean isScoped() {
+        return this != UNSCOPED;
+    }
+
+    @SuppressWarnings("unchecked")
+    void applyTo(final ScopedBindingBuilder b) {
+        if (value instanceof Class) {
+            b.in((Class<? extends Annotation>) value);
+        } else if (value instanceof Scope) {
+            b.in((Scope) value);
+        } else if (this == EAGER_SINGLETON) {
+            b.asEagerSingleton();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Scoping)) {
+            return false;
+        }
+        return value.equals(((Scoping) obj).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return value instanceof Class
+                ? "@" + ((Class<?>) value).getSimpleName()
+                : value.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package decorice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * The cache of a memoizing layer. New entries go to a probation segment;
+ * an entry hit there moves to a protected segment, which holds at most 80%
+ * of the maximum weight and demotes its least recently used entries back to
+ * probation. Eviction takes the least recently used entry of probation
+ * first, so entries that are only seen once cannot flush the ones that are
+ * used again.
+ */
+final class SegmentedLru {
+
+    /**
+     * Stands for a cached {@code null}.
+     */
+    static final Object NULL = new Object();
+
+    private static final class Entry {
+        final Object value;
+        final long weight;
+        final long written;
+        final MemoizationStats stats;
+
+        private Entry(
+                final Object value,
+                final long weight,
+                final long written,
+                final MemoizationStats stats) {
+            this.value = value;
+            this.weight = weight;
+            this.written = written;
+            this.stats = stats;
+        }
+    }
+
+    private final long maximumWeight;
+    private final long protectedMaximumWeight;
+    private final ToLongFunction<Object> weigher;
+    private final long expireAfterWriteNanos;
+    private final boolean offHeap;
+    private final ClassLoader loader;
+
+    private final LinkedHashMap<Object, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Object, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+
+    SegmentedLru(
+            final long maximumWeight,
+            final ToLongFunction<Object> weigher,
+            final long expireAfterWriteNanos,
+            final boolean offHeap,
+            final ClassLoader loader) {
+        this.maximumWeight = maximumWeight;
+        this.protectedMaximumWeight = maximumWeight * 4 / 5;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.offHeap = offHeap;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the cached value, {@link #NULL} for {@code null}, or
+     * {@code null} when there is none.
+     */
+    Object get(final Object key) {
+        final Entry entry;
+        synchronized (this) {
+            entry = lookUp(key);
+        }
+        return entry == null ? null : decode(entry.value);
+    }
+
+    void put(final Object key, final Object value, final MemoizationStats stats) {
+        final Object stored = offHeap ? encode(value) : value == null ? NULL : value;
+        if (stored == null) {
+            return;
+        }
+        final long weight = weigher != null
+                ? weigher.applyAsLong(value)
+                : offHeap ? ((ByteBuffer) stored).capacity() : 1;
+        if (weight > maximumWeight) {
+            return;
+        }
+        final Entry entry = new Entry(stored, weight, System.nanoTime(), stats);
+        synchronized (this) {
+            remove(key);
+            probation.put(key, entry);
+            probationWeight += weight;
+            evict();
+        }
+    }
+
+    private Entry lookUp(final Object key) {
+        Entry entry = protectedSegment.get(key);
+        if (entry != null) {
+            if (isExpired(entry)) {
+                protectedSegment.remove(key);
+                protectedWeight -= entry.weight;
+                return null;
+            }
+            return entry;
+        }
+        entry = probation.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        probationWeight -= entry.weight;
+        if (isExpired(entry)) {
+            return null;
+        }
+        protectedSegment.put(key, entry);
+        protectedWeight += entry.weight;
+        final Iterator<Map.Entry<Object, Entry>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedWeight > protectedMaximumWeight && protectedSegment.size() > 1) {
+            final Map.Entry<Object, Entry> demoted = eldest.next();
+            eldest.remove();
+            protectedWeight -= demoted.getValue().weight;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationWeight += demoted.getValue().weight;
+        }
+        return entry;
+    }
+
+    private void remove(final Object key) {
+        Entry entry = probation.remove(key);
+        if (entry != null) {
+            probationWeight -= entry.weight;
+        }
+        entry = protectedSegment.remove(key);
+        if (entry != null) {
+            protectedWeight -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        while (probationWeight + protectedWeight > maximumWeight) {
+            final boolean fromProbation = !probation.isEmpty();
+            final Iterator<Entry> eldest = (fromProbation ? probation : protectedSegment)
+                    .values().iterator();
+            final Entry evicted = eldest.next();
+            eldest.remove();
+            if (fromProbation) {
+                probationWeight -= evicted.weight;
+            } else {
+                protectedWeight -= evicted.weight;
+            }
+            evicted.stats.evictions.increment();
+        }
+    }
+
+    private boolean isExpired(final Entry entry) {
+        return expireAfterWriteNanos > 0
+                && System.nanoTime() - entry.written >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Returns {@code null} for a value that cannot be serialized.
+     */
+    private static ByteBuffer encode(final Object value) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (final IOException e) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+        buffer.put(bytes.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+
+    private Object decode(final Object stored) {
+        if (!offHeap) {
+            return stored;
+        }
+        final ByteBuffer buffer = ((ByteBuffer) stored).duplicate();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        try (final ObjectInputStream in = new LoaderObjectInputStream(
+                new ByteArrayInputStream(bytes), loader)) {
+            final Object value = in.readObject();
+            return value == null ? NULL : value;
+        } catch (final IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves classes through the loader of the memoized interface rather
+     * than whichever loader is on the stack.
+     */
+    private static final class LoaderObjectInputStream extends ObjectInputStream {
+        private final ClassLoader loader;
+
+        private LoaderObjectInputStream(final InputStream in, final ClassLoader loader)
+                throws IOException {
+            super(in);
+            this.loader = loader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass description)
+                throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(description.getName(), false, loader);
+            } catch (final ClassNotFoundException e) {
+                return super.resolveClass(description);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package decorice;
+
+import com.google.inject.Provider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Provides the front of a switchable chain: a proxy that forwards every call
+ * to the outermost enabled layer of its current composition. When the
+ * {@link ChainSwitch} changes, the next call composes the chain again,
+ * keeping the layers beneath the lowest change, and swaps the composition
+ * in; calls under way keep the one they started with.
+ */
+final class SwitchableChain implements Provider<Object> {
+
+    private final Class<?> type;
+    private final Provider<?> base;
+    /**
+     * Builds layer {@code i} around the instance beneath it, outermost first.
+     */
+    private final List<Function<Object, Object>> layers;
+    private final ChainSwitch chainSwitch;
+    /**
+     * Watches the calls of every instance, or {@code null} for none.
+     */
+    private final LatencyBudget budget;
+    /**
+     * Tells Flight Recorder about each composition, or {@code null}.
+     */
+    private final RecordedLayer.Recording recording;
+
+    SwitchableChain(
+            final Class<?> type,
+            final Provider<?> base,
+            final List<Function<Object, Object>> layers,
+            final ChainSwitch chainSwitch,
+            final LatencyBudget budget,
+            final RecordedLayer.Recording recording) {
+        this.type = type;
+        this.base = base;
+        this.layers = layers;
+        this.chainSwitch = chainSwitch;
+        this.budget = budget;
+        this.recording = recording;
+    }
+
+    @Override
+    public Object get() {
+        return Proxies.of(type, new Front(compose(null, chainSwitch.state())));
+    }
+
+    /**
+     * The instances of one composition: {@code instances[i]} is layer
+     * {@code i}, {@code null} when disabled, and the last one is the base.
+     */
+    private static final class Composition {
+        final ChainSwitch.State state;
+        final Object[] instances;
+        final Object top;
+
+        private Composition(final ChainSwitch.State state, final Object[] instances) {
+            this.state = state;
+            this.instances = instances;
+            Object top = instances[instances.length - 1];
+            for (int i = instances.length - 2; i >= 0; i--) {
+                if (instances[i] != null) {
+                    top = instances[i];
+                }
+            }
+            this.top = top;
+        }
+    }
+
+    private Composition compose(final Composition previous, final ChainSwitch.State state) {
+        return recording == null
+                ? build(previous, state)
+                : RecordedLayer.compose(recording, () -> build(previous, state));
+    }
+
+    private Composition build(final Composition previous, final ChainSwitch.State state) {
+        final int depth = layers.size();
+        final Object[] instances = new Object[depth + 1];
+        instances[depth] = previous == null ? base.get() : previous.instances[depth];
+        Object below = instances[depth];
+        boolean changed = previous == null;
+        for (int i = depth - 1; i >= 0; i--) {
+            if (!changed && previous.state.enabled[i] != state.enabled[i]) {
+                changed = true;
+            }
+            if (state.enabled[i]) {
+                instances[i] = changed ? layers.get(i).apply(below) : previous.instances[i];
+                below = instances[i];
+            }
+        }
+        return new Composition(state, instances);
+    }
+
+    private final class Front implements InvocationHandler {
+        private final AtomicReference<Composition> composition;
+
+        private Front(final Composition composition) {
+            this.composition = new AtomicReference<>(composition);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (Proxies.isObjectMethod(method)) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return Proxies.call(current().top, method, args);
+                }
+            }
+            if (budget == null) {
+                return Proxies.call(current().top, method, args);
+            }
+            final long start = budget.enter();
+            try {
+                return Proxies.call(current().top, method, args);
+            } finally {
+                budget.exit(start);
+            }
+        }
+
+        private Composition current() {
+            final ChainSwitch.State state = chainSwitch.state();
+            Composition current = composition.get();
+            while (current.state.version < state.version) {
+                if (composition.compareAndSet(current, compose(current, state))) {
+                    break;
+                }
+                current = composition.get();
+            }
+            return composition.get();
+        }
+    }
+}
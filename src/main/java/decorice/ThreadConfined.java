@@ -0,0 +1,146 @@
+package decorice;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A scope that gives each platform thread an instance of its own, kept in a
+ * thread local and reused for as long as the thread lives.
+ *
+ * <p>Virtual threads are too many and too short-lived to each keep an
+ * instance. Those asking for a binding of an interface share a front
+ * instead, which lends every call an instance from a bounded pool of
+ * slots, and takes it back when the call returns, so that no two calls use
+ * an instance at the same time. The pool takes no lock, and an instance
+ * with no free slot to go back to is dropped. Virtual threads asking for a
+ * binding of a class get a new instance each time.
+ */
+final class ThreadConfined implements Scope {
+
+    /**
+     * A few instances per processor, since a virtual thread may block in
+     * the middle of a call while others run.
+     */
+    private static final int SLOTS = 4 * Runtime.getRuntime().availableProcessors();
+
+    ThreadConfined() {}
+
+    @Override
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+        return new Confined<>(key, unscoped);
+    }
+
+    @Override
+    public String toString() {
+        return "DecoriceScopes.THREAD_CONFINED";
+    }
+
+    private static final class Confined<T> implements Provider<T> {
+        private final Key<T> key;
+        private final Provider<T> unscoped;
+        private final ThreadLocal<T> local = new ThreadLocal<>();
+        private volatile T front;
+
+        private Confined(final Key<T> key, final Provider<T> unscoped) {
+            this.key = key;
+            this.unscoped = unscoped;
+        }
+
+        /**
+         * Only virtual threads, which never keep an instance, and platform
+         * threads asking for the first time need to find out which they are.
+         */
+        @Override
+        public T get() {
+            T instance = local.get();
+            if (instance != null) {
+                return instance;
+            }
+            if (Threads.isVirtual(Thread.currentThread())) {
+                return key.getTypeLiteral().getRawType().isInterface()
+                        ? front()
+                        : unscoped.get();
+            }
+            instance = unscoped.get();
+            local.set(instance);
+            return instance;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T front() {
+            T built = front;
+            if (built == null) {
+                final Class<?> type = key.getTypeLiteral().getRawType();
+                built = (T) Proxies.of(type, new Pool(key, unscoped));
+                front = built;
+            }
+            return built;
+        }
+
+        @Override
+        public String toString() {
+            return unscoped + "[DecoriceScopes.THREAD_CONFINED]";
+        }
+    }
+
+    /**
+     * Lends an instance to each call. Two threads may build a front at the
+     * same time; the instances of the one that loses are dropped with it.
+     */
+    private static final class Pool implements InvocationHandler {
+        private final Key<?> key;
+        private final Provider<?> unscoped;
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(SLOTS);
+
+        private Pool(final Key<?> key, final Provider<?> unscoped) {
+            this.key = key;
+            this.unscoped = unscoped;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (Proxies.isObjectMethod(method)) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "thread-confined " + key;
+                }
+            }
+            final int start = (int) (Thread.currentThread().getId() % SLOTS);
+            final Object instance = borrow(start);
+            try {
+                return Proxies.call(instance, method, args);
+            } finally {
+                giveBack(start, instance);
+            }
+        }
+
+        private Object borrow(final int start) {
+            for (int i = 0; i < SLOTS; i++) {
+                final int slot = (start + i) % SLOTS;
+                final Object instance = slots.get(slot);
+                if (instance != null && slots.compareAndSet(slot, instance, null)) {
+                    return instance;
+                }
+            }
+            return unscoped.get();
+        }
+
+        private void giveBack(final int start, final Object instance) {
+            for (int i = 0; i < SLOTS; i++) {
+                if (slots.compareAndSet((start + i) % SLOTS, null, instance)) {
+                    return;
+                }
+            }
+        }
+    }
+}
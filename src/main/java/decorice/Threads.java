@@ -0,0 +1,70 @@
+package decorice;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual threads, when the running JDK has them. decorice is built for
+ * Java 8, so they are reached reflectively; {@link #isVirtual(Thread)}, which
+ * scopes ask on every call, through a method handle the JIT can inline.
+ */
+final class Threads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+            method("java.util.concurrent.Executors", "newVirtualThreadPerTaskExecutor");
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private Threads() {}
+
+    /**
+     * Returns {@code null} before JDK 21.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Always {@code false} before JDK 21.
+     */
+    static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(
+                    Thread.class,
+                    "isVirtual",
+                    MethodType.methodType(boolean.class));
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method method(final String className, final String name) {
+        try {
+            return Class.forName(className).getMethod(name);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package decorice;
+
+import com.google.inject.Key;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long the eager singletons of a {@link ChainWarmUp} took to build.
+ */
+public final class WarmUpReport {
+
+    private final Map<Key<?>, Long> buildNanos;
+    private final long elapsedNanos;
+
+    WarmUpReport(final Map<Key<?>, Long> buildNanos, final long elapsedNanos) {
+        this.buildNanos = Collections.unmodifiableMap(buildNanos);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The time each singleton took to build, not counting the eager
+     * singletons it depends on, in the order they were built.
+     */
+    public Map<Key<?>, Long> buildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * The wall-clock time of the whole warm-up.
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder("WarmUpReport[")
+                .append(buildNanos.size())
+                .append(" singletons in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .append("ms");
+        for (final Map.Entry<Key<?>, Long> e : buildNanos.entrySet()) {
+            s.append(", ")
+                    .append(e.getKey())
+                    .append(": ")
+                    .append(TimeUnit.NANOSECONDS.toMicros(e.getValue()))
+                    .append("us");
+        }
+        return s.append(']').toString();
+    }
+}
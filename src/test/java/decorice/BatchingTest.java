@@ -0,0 +1,170 @@
+package decorice;
+
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Scopes.SINGLETON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class BatchingTest {
+
+    private static interface Store {
+        String get(String id);
+
+        Map<String, String> getAll(Collection<String> ids);
+    }
+
+    private static class BulkStore implements Store {
+        final List<Collection<String>> bulkCalls = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String get(final String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, String> getAll(final Collection<String> ids) {
+            bulkCalls.add(ids);
+            final Map<String, String> found = new LinkedHashMap<>();
+            for (final String id : ids) {
+                if (!id.equals("missing")) {
+                    found.put(id, "item" + id);
+                }
+            }
+            return found;
+        }
+    }
+
+    private static interface IterableStore {
+        String get(String id);
+
+        Map<String, String> getAll(Iterable<String> ids);
+    }
+
+    private static class IterableStoreImpl implements IterableStore {
+        @Override
+        public String get(final String id) {
+            return "item" + id;
+        }
+
+        @Override
+        public Map<String, String> getAll(final Iterable<String> ids) {
+            return Collections.emptyMap();
+        }
+    }
+
+    @Test
+    public void fullBatchesAreSentAtOnce() throws Exception {
+        final Batching batching = Batching.of("get", "getAll")
+                .maximumBatchSize(8)
+                .maximumDelay(10, TimeUnit.SECONDS);
+        final Injector injector = injector(batching);
+        final Store store = injector.getInstance(Store.class);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final String id = Integer.toString(i);
+                results.add(executor.submit(() -> store.get(id)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS), equalTo("item" + i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final BulkStore base = injector.getInstance(BulkStore.class);
+        assertThat(base.bulkCalls.size(), is(1));
+        assertThat(base.bulkCalls.get(0).size(), is(8));
+        assertThat(batching.stats().batches(), is(1L));
+        assertThat(batching.stats().calls(), is(8L));
+        assertThat(batching.stats().largestBatch(), is(8L));
+    }
+
+    @Test
+    public void lonelyCallsAreSentAfterTheDelay() {
+        final Batching batching = Batching.of("get", "getAll").maximumDelay(1, TimeUnit.MILLISECONDS);
+        final Injector injector = injector(batching);
+        final Store store = injector.getInstance(Store.class);
+
+        assertThat(store.get("1"), equalTo("item1"));
+        assertThat(store.get("missing"), is(nullValue()));
+        assertThat(store.getAll(Collections.singleton("2")).get("2"), equalTo("item2"));
+
+        assertThat(injector.getInstance(BulkStore.class).bulkCalls.size(), is(3));
+        assertThat(batching.stats().batches(), is(2L));
+    }
+
+    @Test
+    public void bulkMethodMustTakeACollection() {
+        try {
+            injector(Batching.of("get", "get"));
+            fail();
+        } catch (final CreationException e) {
+            assertThat(e.getMessage(), containsString("get"));
+            assertThat(e.getMessage(), containsString("Collection"));
+        }
+    }
+
+    @Test
+    public void missingMethodsAreReportedAlone() {
+        for (final Batching batching : new Batching[] {
+                Batching.of("noSuchMethod", "getAll"),
+                Batching.of("get", "noSuchMethod") }) {
+            try {
+                injector(batching);
+                fail();
+            } catch (final CreationException e) {
+                assertThat(e.getMessage(), containsString("has no method named noSuchMethod"));
+                assertThat(e.getErrorMessages().size(), is(1));
+            }
+        }
+    }
+
+    @Test
+    public void bulkMethodMustNotTakeAnyIterable() {
+        try {
+            Guice.createInjector(new DecoratorModule() {{
+                bind(IterableStore.class)
+                        .to(IterableStoreImpl.class)
+                        .decoratedBy(DecoratorModule.<IterableStore>layer(
+                                Batching.of("get", "getAll")));
+            }});
+            fail();
+        } catch (final CreationException e) {
+            assertThat(e.getMessage(), containsString("it takes a java.lang.Iterable"));
+            assertThat(e.getErrorMessages().size(), is(1));
+        }
+    }
+
+    private static Injector injector(final Batching batching) {
+        return Guice.createInjector(
+                binder -> binder.bind(BulkStore.class).in(SINGLETON),
+                new DecoratorModule() {{
+                    bind(Store.class)
+                            .to(BulkStore.class)
+                            .decoratedBy(DecoratorModule.<Store>layer(batching).in(SINGLETON));
+                }});
+    }
+}
@@ -0,0 +1,139 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ChainReportTest {
+
+    private static interface Foo {
+        String bar();
+    }
+
+    private static class Helper {}
+
+    private static class D0 implements Foo {
+        @Override
+        public String bar() {
+            return "D0";
+        }
+    }
+
+    private static class D1 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D1(final Helper helper, @DecoratedBy(D1.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "D1:" + decorated.bar();
+        }
+    }
+
+    private static class D2 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D2(@DecoratedBy(D2.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "D2:" + decorated.bar();
+        }
+    }
+
+    private static class PerRequest {
+        @Inject
+        PerRequest(final Foo foo) {}
+    }
+
+    private static class Lookup {
+        @Inject
+        Provider<Foo> foo;
+    }
+
+    private static final Module MODULE = new DecoratorModule() {{
+        bind(Foo.class)
+                .to(D0.class)
+                .decoratedBy(D2.class, D1.class);
+        bind(Foo.class)
+                .annotatedWith(Names.named("cached"))
+                .to(D0.class)
+                .decoratedBy(D2.class, D1.class)
+                .fused()
+                .in(Singleton.class);
+    }};
+
+    @Test
+    public void describesEveryChain() {
+        final List<ChainReport.Entry> entries = ChainReport.of(MODULE).entries();
+
+        assertThat(entries.size(), is(2));
+        final ChainReport.Entry linked = entries.get(0);
+        assertThat(linked.key(), equalTo((Key) Key.get(Foo.class)));
+        assertThat(linked.mode(), equalTo("linked"));
+        assertThat(linked.depth(), is(2));
+        assertThat(scopes(linked), equalTo("unscoped unscoped unscoped"));
+        assertThat(linked.layers().get(1).dependencies(), hasItem((Key) Key.get(Helper.class)));
+        assertThat(linked.allocationsPerInstance(), is(4));
+
+        final ChainReport.Entry fused = entries.get(1);
+        assertThat(fused.mode(), equalTo("fused"));
+        assertThat(scopes(fused), equalTo("@Singleton inline inline"));
+        assertThat(fused.allocationsPerInstance(), is(0));
+    }
+
+    @Test
+    public void warnsOfChainsBuiltPerRequest() {
+        final ChainReport report = ChainReport.of(
+                MODULE,
+                binder -> {
+                    binder.bind(PerRequest.class);
+                    binder.bind(Lookup.class).in(Singleton.class);
+                });
+
+        assertThat(report.entries().get(0).dependents().size(), is(2));
+        assertThat(report.warnings().size(), is(2));
+        assertThat(report.warnings().toString(), containsString(PerRequest.class.getName()));
+        assertThat(report.warnings().toString(), containsString("from a provider"));
+        assertThat(report.entries().get(1).dependents().size(), is(0));
+    }
+
+    @Test
+    public void readsInjectorsAndExportsJson() {
+        final ChainReport report = ChainReport.of(Guice.createInjector(MODULE));
+
+        assertThat(report.entries().size(), is(2));
+        assertThat(report.toJson(), startsWith("{\"chains\":[{\"key\":\"Key[type=decorice.ChainReportTest$Foo"));
+        assertThat(report.toJson(), containsString("\"depth\":2,\"allocationsPerInstance\":4"));
+        assertThat(report.toJson(), containsString("\"scope\":\"Scopes.SINGLETON\""));
+    }
+
+    private static String scopes(final ChainReport.Entry entry) {
+        final List<String> scopes = new ArrayList<>();
+        for (final ChainReport.LayerEntry layer : entry.layers()) {
+            scopes.add(layer.scope());
+        }
+        return String.join(" ", scopes);
+    }
+}
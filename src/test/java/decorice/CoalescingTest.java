@@ -0,0 +1,138 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.inject.Scopes.SINGLETON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class CoalescingTest {
+
+    private static final int CALLERS = 16;
+
+    private static interface Lookup {
+        String find(int id);
+    }
+
+    private static class SlowLookup implements Lookup {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean failing;
+
+        @Override
+        public String find(final int id) {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IllegalStateException("failed" + id);
+            }
+            return "found" + id;
+        }
+    }
+
+    private static class Tracing implements Lookup {
+        private final Lookup decorated;
+
+        @Inject
+        public Tracing(@DecoratedBy(Tracing.class) final Lookup decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String find(final int id) {
+            return "traced:" + decorated.find(id);
+        }
+    }
+
+    @Test
+    public void concurrentIdenticalCallsReachTheBaseOnce() throws Exception {
+        final Injector injector = injector();
+        final SlowLookup base = injector.getInstance(SlowLookup.class);
+
+        final List<Future<String>> results = callConcurrently(injector.getInstance(Lookup.class), base);
+
+        for (final Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS), equalTo("traced:found1"));
+        }
+        assertThat(base.calls.get(), is(1));
+    }
+
+    @Test
+    public void failuresAreSharedAndForgotten() throws Exception {
+        final Injector injector = injector();
+        final SlowLookup base = injector.getInstance(SlowLookup.class);
+        base.failing = true;
+
+        final List<Future<String>> results = callConcurrently(injector.getInstance(Lookup.class), base);
+
+        for (final Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            }
+        }
+        assertThat(base.calls.get(), is(1));
+
+        base.failing = false;
+        assertThat(injector.getInstance(Lookup.class).find(1), equalTo("traced:found1"));
+        assertThat(base.calls.get(), is(2));
+    }
+
+    private static Injector injector() {
+        return Guice.createInjector(
+                binder -> binder.bind(SlowLookup.class).in(SINGLETON),
+                new DecoratorModule() {{
+                    bind(Lookup.class)
+                            .to(SlowLookup.class)
+                            .decoratedBy(
+                                    layer(Tracing.class),
+                                    DecoratorModule.<Lookup>layer(Coalescing.of()).in(SINGLETON));
+                }});
+    }
+
+    /**
+     * Lets the base return once every caller has had the time to reach it.
+     */
+    private static List<Future<String>> callConcurrently(
+            final Lookup lookup,
+            final SlowLookup base) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> lookup.find(1)));
+            base.entered.await(5, TimeUnit.SECONDS);
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(executor.submit(() -> lookup.find(1)));
+            }
+            Thread.sleep(100);
+            base.release.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
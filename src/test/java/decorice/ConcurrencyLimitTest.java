@@ -0,0 +1,188 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitTest {
+
+    private static interface Foo {
+        String bar();
+    }
+
+    /**
+     * Serves four calls at a time in a millisecond; more queue up and
+     * take longer.
+     */
+    private static class SaturatingFoo implements Foo {
+        private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+
+        @Override
+        public String bar() {
+            final int calls = IN_FLIGHT.incrementAndGet();
+            try {
+                LockSupport.parkNanos(Math.max(4, calls) * TimeUnit.MICROSECONDS.toNanos(250));
+            } finally {
+                IN_FLIGHT.decrementAndGet();
+            }
+            return "SaturatingFoo";
+        }
+    }
+
+    /**
+     * Waits for the test to let its calls return.
+     */
+    private static class BlockingFoo implements Foo {
+        static volatile CountDownLatch entered;
+        static volatile CountDownLatch release;
+
+        @Override
+        public String bar() {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "BlockingFoo";
+        }
+    }
+
+    @Test
+    public void theLimitSettlesBeforeLatencyGoesUp() throws Exception {
+        final ConcurrencyLimit limit = ConcurrencyLimit.create().initialLimit(4);
+        final Foo foo = injector(SaturatingFoo.class, limit).getInstance(Foo.class);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            final List<Future<?>> callers = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                callers.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            foo.bar();
+                        } catch (final ConcurrencyLimitExceededException e) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> caller : callers) {
+                caller.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final ConcurrencyLimitStats stats = limit.stats();
+        assertThat(stats.toString(), stats.limit(), lessThan(16));
+        assertThat(stats.toString(), stats.rejected(), greaterThan(0L));
+        assertThat(stats.toString(), stats.accepted(), greaterThan(0L));
+        assertThat(stats.inFlight(), is(0));
+    }
+
+    @Test
+    public void callsBeyondTheLimitAreTurnedAwayAtOnce() throws Exception {
+        final ConcurrencyLimit limit = ConcurrencyLimit.create().initialLimit(1).limits(1, 1);
+        final Foo foo = injector(BlockingFoo.class, limit).getInstance(Foo.class);
+        BlockingFoo.entered = new CountDownLatch(1);
+        BlockingFoo.release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> first = executor.submit(foo::bar);
+            BlockingFoo.entered.await(5, TimeUnit.SECONDS);
+            try {
+                foo.bar();
+                fail();
+            } catch (final ConcurrencyLimitExceededException e) {
+                assertThat(limit.stats().rejected(), is(1L));
+            }
+            BlockingFoo.release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS), equalTo("BlockingFoo"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void queuedCallsWaitForAPermit() throws Exception {
+        final ConcurrencyLimit limit = ConcurrencyLimit.create()
+                .initialLimit(1)
+                .limits(1, 1)
+                .queue(1, 5, TimeUnit.SECONDS);
+        final Foo foo = injector(BlockingFoo.class, limit).getInstance(Foo.class);
+        BlockingFoo.entered = new CountDownLatch(1);
+        BlockingFoo.release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(foo::bar);
+            BlockingFoo.entered.await(5, TimeUnit.SECONDS);
+            final Future<String> second = executor.submit(foo::bar);
+            while (limit.stats().queued() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                foo.bar();
+                fail();
+            } catch (final ConcurrencyLimitExceededException e) {
+                // the queue is full
+            }
+            BlockingFoo.release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS), equalTo("BlockingFoo"));
+            assertThat(second.get(5, TimeUnit.SECONDS), equalTo("BlockingFoo"));
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(limit.stats().accepted(), is(2L));
+        assertThat(limit.stats().rejected(), is(1L));
+    }
+
+    @Test
+    public void theLimitIsConfiguredUntilItIsBuilt() {
+        final ConcurrencyLimit limit = ConcurrencyLimit.create();
+        assertThat(limit.stats().limit(), is(0));
+        limit.initialLimit(4);
+
+        injector(SaturatingFoo.class, limit);
+
+        assertThat(limit.stats().limit(), is(4));
+        try {
+            limit.initialLimit(8);
+            fail();
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("already built"));
+        }
+        assertThat(limit.stats().limit(), is(4));
+    }
+
+    private static Injector injector(
+            final Class<? extends Foo> base,
+            final ConcurrencyLimit limit) {
+        return Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(base)
+                    .decoratedBy(DecoratorModule.<Foo>layer(limit));
+        }});
+    }
+}
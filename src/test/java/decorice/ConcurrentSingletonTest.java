@@ -0,0 +1,245 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.Scope;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.inject.Scopes.SINGLETON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class ConcurrentSingletonTest {
+
+    private static final int CHAINS = 8;
+    private static final long BUILD_MILLIS = 50;
+    private static final long WAIT_MILLIS = 100;
+
+    private static interface Foo {
+        String bar();
+    }
+
+    private static class FooImpl implements Foo {
+        static final AtomicInteger built = new AtomicInteger();
+
+        FooImpl() {
+            built.incrementAndGet();
+        }
+
+        @Override
+        public String bar() {
+            return "FooImpl";
+        }
+    }
+
+    private static class Slow implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public Slow(@DecoratedBy(Slow.class) final Foo decorated) throws InterruptedException {
+            Thread.sleep(BUILD_MILLIS);
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "Slow:" + decorated.bar();
+        }
+    }
+
+    /**
+     * Waits, while it is built, for the other chains to be built at the
+     * same time.
+     */
+    private static class Rendezvous implements Foo {
+        static volatile CountDownLatch building;
+        static final AtomicInteger metTheOthers = new AtomicInteger();
+
+        private final Foo decorated;
+
+        @Inject
+        public Rendezvous(@DecoratedBy(Rendezvous.class) final Foo decorated)
+                throws InterruptedException {
+            building.countDown();
+            if (building.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                metTheOthers.incrementAndGet();
+            }
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "Rendezvous:" + decorated.bar();
+        }
+    }
+
+    private static class UsingA implements Foo {
+        private final Foo decorated;
+        private final Foo a;
+
+        @Inject
+        public UsingA(@Named("a") final Foo a, @DecoratedBy(UsingA.class) final Foo decorated) {
+            this.decorated = decorated;
+            this.a = a;
+        }
+
+        @Override
+        public String bar() {
+            return a.bar() + "/UsingA:" + decorated.bar();
+        }
+    }
+
+    private static class UsingB implements Foo {
+        @Inject
+        public UsingB(@Named("b") final Foo b, @DecoratedBy(UsingB.class) final Foo decorated) {
+        }
+
+        @Override
+        public String bar() {
+            return "UsingB";
+        }
+    }
+
+    @Test
+    public void threadsBuildingDifferentSingletonsDoNotWaitForEachOther() throws Exception {
+        // one at a time, only the last finds the others built
+        assertThat(buildAll(SINGLETON), is(1));
+        assertThat(buildAll(DecoriceScopes.CONCURRENT_SINGLETON), is(CHAINS));
+    }
+
+    @Test
+    public void manyThreadsGetOneInstance() throws Exception {
+        FooImpl.built.set(0);
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(Slow.class)
+                    .fused()
+                    .in(DecoriceScopes.CONCURRENT_SINGLETON);
+        }});
+        final List<Foo> instances = concurrently(32, i -> injector.getInstance(Foo.class));
+
+        for (final Foo instance : instances) {
+            assertThat(instance, is(sameInstance(instances.get(0))));
+        }
+        assertThat(FooImpl.built.get(), is(1));
+    }
+
+    @Test
+    public void chainDependingOnAnotherChain() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .annotatedWith(Names.named("a"))
+                    .to(FooImpl.class)
+                    .decoratedBy(Slow.class)
+                    .in(DecoriceScopes.CONCURRENT_SINGLETON);
+            bind(Foo.class)
+                    .annotatedWith(Names.named("b"))
+                    .to(FooImpl.class)
+                    .decoratedBy(UsingA.class)
+                    .fused()
+                    .in(DecoriceScopes.CONCURRENT_SINGLETON);
+        }});
+        final List<Foo> instances = concurrently(
+                16,
+                i -> injector.getInstance(Key.get(Foo.class, Names.named(i % 2 == 0 ? "a" : "b"))));
+
+        final Foo a = injector.getInstance(Key.get(Foo.class, Names.named("a")));
+        assertThat(((UsingA) instances.get(1)).a, is(sameInstance(a)));
+        assertThat(instances.get(1).bar(), equalTo("Slow:FooImpl/UsingA:FooImpl"));
+    }
+
+    @Test
+    public void cycleIsReported() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .annotatedWith(Names.named("a"))
+                    .to(FooImpl.class)
+                    .decoratedBy(UsingB.class)
+                    .fused()
+                    .in(DecoriceScopes.CONCURRENT_SINGLETON);
+            bind(Foo.class)
+                    .annotatedWith(Names.named("b"))
+                    .to(FooImpl.class)
+                    .decoratedBy(UsingA.class)
+                    .fused()
+                    .in(DecoriceScopes.CONCURRENT_SINGLETON);
+        }});
+        try {
+            injector.getInstance(Key.get(Foo.class, Names.named("a")));
+            fail();
+        } catch (final ProvisionException e) {
+            assertThat(e.getMessage(), containsString("Singleton depends on itself"));
+        }
+    }
+
+    /**
+     * Has one thread per chain ask for its chain at once, and returns how
+     * many of the chains were built while all of them were.
+     */
+    private static int buildAll(final Scope scope) throws Exception {
+        Rendezvous.building = new CountDownLatch(CHAINS);
+        Rendezvous.metTheOthers.set(0);
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            for (int i = 0; i < CHAINS; i++) {
+                bind(Foo.class)
+                        .annotatedWith(Names.named("chain" + i))
+                        .to(FooImpl.class)
+                        .decoratedBy(Rendezvous.class)
+                        .fused()
+                        .in(scope);
+            }
+        }});
+        concurrently(
+                CHAINS,
+                i -> injector.getInstance(Key.get(Foo.class, Names.named("chain" + i))));
+        return Rendezvous.metTheOthers.get();
+    }
+
+    private static <T> List<T> concurrently(final int threads, final Task<T> task)
+            throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int index = i;
+                futures.add(executor.submit((Callable<T>) () -> {
+                    start.await();
+                    return task.run(index);
+                }));
+            }
+            start.countDown();
+            final List<T> results = new ArrayList<>();
+            for (final Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static interface Task<T> {
+        T run(int index) throws Exception;
+    }
+}
@@ -3,6 +3,7 @@ package decorice;
 import com.google.common.collect.Maps;
 import com.google.inject.AbstractModule;
 import com.google.inject.BindingAnnotation;
+import com.google.inject.CreationException;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -10,11 +11,22 @@ import com.google.inject.OutOfScopeException;
 import com.google.inject.Provider;
 import com.google.inject.Scope;
 import com.google.inject.ScopeAnnotation;
+import com.google.inject.multibindings.MapBinder;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
 import org.junit.Test;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.inject.Scopes.SINGLETON;
@@ -22,7 +34,10 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
 
 @SuppressWarnings("unchecked")
 public class DecoriceTest {
@@ -66,6 +81,51 @@ public class DecoriceTest {
         }
     }
 
+    private static class Tagging implements Foo {
+        private final Foo decorated;
+        private final String tag;
+
+        @Inject
+        public Tagging(
+                @Named("tag") final String tag,
+                @DecoratedBy(Tagging.class) final Foo decorated) {
+            this.decorated = decorated;
+            this.tag = tag;
+        }
+
+        @Override
+        public String bar() {
+            return tag + ":" + decorated.bar();
+        }
+    }
+
+    private static class Depending implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public Depending(
+                @Named("a") final Provider<Foo> a,
+                @DecoratedBy(Depending.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "Depending:" + decorated.bar();
+        }
+    }
+
+    private static class Undecorating implements Foo {
+        @Inject
+        public Undecorating(final FooImpl foo) {
+        }
+
+        @Override
+        public String bar() {
+            return "Undecorating";
+        }
+    }
+
     private static class FooImpl implements Foo {
         @Override
         public String bar() {
@@ -73,6 +133,27 @@ public class DecoriceTest {
         }
     }
 
+    private static class OtherFooImpl implements Foo {
+        @Override
+        public String bar() {
+            return "OtherFooImpl";
+        }
+    }
+
+    private static class OtherFooProvider implements Provider<Foo> {
+        @Override
+        public Foo get() {
+            return new OtherFooImpl();
+        }
+    }
+
+    private static class FailingFoo implements Foo {
+        @Override
+        public String bar() {
+            throw new IllegalStateException("FailingFoo");
+        }
+    }
+
     private static class SimpleScope implements Scope {
 
         private final ThreadLocal<Map<Key<?>, Object>> values
@@ -182,6 +263,54 @@ public class DecoriceTest {
                 equalTo("D2:D1:FooImpl"));
     }
 
+    @Test
+    public void bindToInstance() {
+        final FooImpl base = new FooImpl();
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .toInstance(base)
+                    .decoratedBy(D2.class, D1.class);
+            bind(Foo.class)
+                    .annotatedWith(Names.named("other"))
+                    .toInstance(new OtherFooImpl())
+                    .decoratedBy(D2.class, D1.class)
+                    .fused();
+        }});
+
+        final D2 foo = (D2) injector.getInstance(Foo.class);
+        assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+        assertThat(((D1) foo.decorated).decorated, is(sameInstance((Foo) base)));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("other"))).bar(),
+                equalTo("D2:D1:OtherFooImpl"));
+    }
+
+    @Test
+    public void bindToProvider() {
+        final AtomicInteger built = new AtomicInteger();
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .toProvider(() -> {
+                        built.incrementAndGet();
+                        return new FooImpl();
+                    })
+                    .decoratedBy(D2.class, D1.class);
+            bind(Foo.class)
+                    .annotatedWith(Names.named("key"))
+                    .toProvider(Key.get(OtherFooProvider.class))
+                    .decoratedBy(D2.class, D1.class)
+                    .fused()
+                    .in(SINGLETON);
+        }});
+
+        assertThat(injector.getInstance(Foo.class).bar(), equalTo("D2:D1:FooImpl"));
+        assertThat(injector.getInstance(Foo.class).bar(), equalTo("D2:D1:FooImpl"));
+        assertThat(built.get(), is(2));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("key"))).bar(),
+                equalTo("D2:D1:OtherFooImpl"));
+    }
+
     @Test
     public void asEagerSingleton() {
         final Injector injector = Guice.createInjector(
@@ -271,4 +400,507 @@ public class DecoriceTest {
                 equalTo("D2:D1:FooImpl"));
     }
 
+    @Test
+    public void fused() {
+        final Injector injector = Guice.createInjector(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bindConstant().annotatedWith(Names.named("tag")).to("T");
+                        install(new DecoratorModule() {{
+                            bind(Foo.class)
+                                    .to(FooImpl.class)
+                                    .decoratedBy(
+                                            D2.class,
+                                            Tagging.class,
+                                            D1.class)
+                                    .fused();
+                        }});
+                    }
+                });
+        assertThat(
+                injector.getInstance(Foo.class).bar(),
+                equalTo("D2:T:D1:FooImpl"));
+        assertThat(
+                injector.getInstance(Foo.class),
+                is(not(sameInstance(injector.getInstance(Foo.class)))));
+    }
+
+    @Test
+    public void fusedInScope() {
+        final Injector injector = Guice.createInjector(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(Foo.class)
+                                .annotatedWith(SomeAnnotation.class)
+                                .to(FooImpl.class);
+                        install(new DecoratorModule() {{
+                            bind(Foo.class)
+                                    .to(Key.get(Foo.class, SomeAnnotation.class))
+                                    .decoratedBy(
+                                            D2.class,
+                                            D1.class)
+                                    .fused()
+                                    .in(SINGLETON);
+                        }});
+                    }
+                });
+
+        final Foo instance1 = injector.getInstance(Foo.class);
+        final Foo instance2 = injector.getInstance(Foo.class);
+
+        assertThat(instance1, is(sameInstance(instance2)));
+        assertThat(
+                instance1.bar(),
+                equalTo("D2:D1:FooImpl"));
+    }
+
+    @Test(expected = CreationException.class)
+    public void fusedRejectsDecoratorWithoutDecoratedByParameter() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            D2.class,
+                            Undecorating.class)
+                    .fused();
+        }});
+    }
+
+    @Test
+    public void scopedLayers() {
+        final Injector injector = Guice.createInjector(
+                new DecoratorModule() {{
+                    bind(Foo.class)
+                            .to(layer(FooImpl.class).in(SINGLETON))
+                            .decoratedBy(
+                                    layer(D2.class),
+                                    layer(D1.class).in(Singleton.class));
+                }});
+
+        final D2 instance1 = (D2) injector.getInstance(Foo.class);
+        final D2 instance2 = (D2) injector.getInstance(Foo.class);
+
+        assertThat(instance1, is(not(sameInstance(instance2))));
+        assertThat(instance1.decorated, is(sameInstance(instance2.decorated)));
+        assertThat(
+                instance1.bar(),
+                equalTo("D2:D1:FooImpl"));
+    }
+
+    @Test
+    public void fusedScopedLayers() {
+        final Injector injector = Guice.createInjector(
+                new DecoratorModule() {{
+                    bind(Foo.class)
+                            .to(FooImpl.class)
+                            .decoratedBy(
+                                    layer(D2.class),
+                                    layer(D1.class),
+                                    layer(Tagging.class).in(SINGLETON))
+                            .fused();
+                }},
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bindConstant().annotatedWith(Names.named("tag")).to("T");
+                    }
+                });
+
+        final D2 instance1 = (D2) injector.getInstance(Foo.class);
+        final D2 instance2 = (D2) injector.getInstance(Foo.class);
+
+        assertThat(instance1.decorated, is(not(sameInstance(instance2.decorated))));
+        assertThat(
+                ((D1) instance1.decorated).decorated,
+                is(sameInstance(((D1) instance2.decorated).decorated)));
+        assertThat(
+                instance1.bar(),
+                equalTo("D2:D1:T:FooImpl"));
+    }
+
+    @Test(expected = CreationException.class)
+    public void outermostLayerScopedTwice() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layer(D2.class).in(SINGLETON),
+                            layer(D1.class))
+                    .in(SINGLETON);
+        }});
+    }
+
+    @Test
+    public void manyChains() {
+        final Injector injector = Guice.createInjector(
+                new DecoratorModule() {{
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("a"))
+                            .to(FooImpl.class)
+                            .decoratedBy(
+                                    D2.class,
+                                    D1.class);
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("b"))
+                            .to(FooImpl.class)
+                            .decoratedBy(
+                                    D2.class,
+                                    D1.class);
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("c"))
+                            .to(OtherFooImpl.class)
+                            .decoratedBy(
+                                    D2.class,
+                                    D1.class)
+                            .fused();
+                }});
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("a"))).bar(),
+                equalTo("D2:D1:FooImpl"));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("b"))).bar(),
+                equalTo("D2:D1:FooImpl"));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("c"))).bar(),
+                equalTo("D2:D1:OtherFooImpl"));
+    }
+
+    @Test
+    public void sharedScopedSuffixes() {
+        for (final boolean fused : new boolean[] {false, true}) {
+            final Injector injector = Guice.createInjector(
+                    new DecoratorModule() {{
+                        shareScopedSuffixes();
+                        final ChainBindingBuilder a = bind(Foo.class)
+                                .annotatedWith(Names.named("a"))
+                                .to(FooImpl.class)
+                                .decoratedBy(
+                                        layer(D2.class),
+                                        layer(D1.class).in(SINGLETON));
+                        final ChainBindingBuilder b = bind(Foo.class)
+                                .annotatedWith(Names.named("b"))
+                                .to(FooImpl.class)
+                                .decoratedBy(
+                                        layer(Tagging.class),
+                                        layer(D1.class).in(SINGLETON));
+                        if (fused) {
+                            a.fused();
+                            b.fused();
+                        }
+                    }},
+                    binder -> binder.bindConstant().annotatedWith(Names.named("tag")).to("T"));
+
+            final D2 a = (D2) injector.getInstance(Key.get(Foo.class, Names.named("a")));
+            final Tagging b = (Tagging) injector.getInstance(Key.get(Foo.class, Names.named("b")));
+
+            assertThat(a.decorated, is(sameInstance(b.decorated)));
+            assertThat(a.bar(), equalTo("D2:D1:FooImpl"));
+            assertThat(b.bar(), equalTo("T:D1:FooImpl"));
+        }
+    }
+
+    @Test
+    public void decorateEach() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            decorateEach(Foo.class, binder -> {
+                binder.bind(Foo.class).annotatedWith(Names.named("a")).to(FooImpl.class);
+                binder.bind(Foo.class).annotatedWith(Names.named("b")).toInstance(new OtherFooImpl());
+                binder.bind(Foo.class)
+                        .annotatedWith(Names.named("c"))
+                        .toProvider(FooImpl::new)
+                        .in(SINGLETON);
+                binder.bindConstant().annotatedWith(Names.named("tag")).to("T");
+            }).decoratedBy(Tagging.class, D1.class);
+        }});
+
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("a"))).bar(),
+                equalTo("T:D1:FooImpl"));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("b"))).bar(),
+                equalTo("T:D1:OtherFooImpl"));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("c"))),
+                is(sameInstance(injector.getInstance(Key.get(Foo.class, Names.named("c"))))));
+        assertThat(
+                injector.getInstance(Key.get(Foo.class, Names.named("a"))),
+                is(not(sameInstance(injector.getInstance(Key.get(Foo.class, Names.named("a")))))));
+    }
+
+    @Test
+    public void decorateEachElementOfAMultibinder() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            decorateEach(Foo.class, binder -> {
+                final Multibinder<Foo> foos = Multibinder.newSetBinder(binder, Foo.class);
+                foos.addBinding().to(FooImpl.class);
+                foos.addBinding().toInstance(new OtherFooImpl());
+                binder.bindConstant().annotatedWith(Names.named("tag")).to("T");
+            }).decoratedBy(Tagging.class, D1.class);
+        }});
+
+        final Set<String> bars = new HashSet<>();
+        for (final Foo foo : injector.getInstance(new Key<Set<Foo>>() {})) {
+            bars.add(foo.bar());
+        }
+        assertThat(bars, equalTo((Set<String>) new HashSet<>(Arrays.asList(
+                "T:D1:FooImpl", "T:D1:OtherFooImpl"))));
+    }
+
+    @Test
+    public void decorateEachValueOfAMapBinder() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            decorateEach(Foo.class, binder -> {
+                final MapBinder<String, Foo> foos =
+                        MapBinder.newMapBinder(binder, String.class, Foo.class);
+                foos.addBinding("impl").to(FooImpl.class);
+                foos.addBinding("other").toInstance(new OtherFooImpl());
+                binder.bindConstant().annotatedWith(Names.named("tag")).to("T");
+            }).decoratedBy(Tagging.class, D1.class);
+        }});
+
+        final Map<String, Foo> foos = injector.getInstance(new Key<Map<String, Foo>>() {});
+        assertThat(foos.keySet(), equalTo((Set<String>) new HashSet<>(Arrays.asList(
+                "impl", "other"))));
+        assertThat(foos.get("impl").bar(), equalTo("T:D1:FooImpl"));
+        assertThat(foos.get("other").bar(), equalTo("T:D1:OtherFooImpl"));
+        final Map<String, Provider<Foo>> providers =
+                injector.getInstance(new Key<Map<String, Provider<Foo>>>() {});
+        assertThat(providers.get("impl").get().bar(), equalTo("T:D1:FooImpl"));
+    }
+
+    @Test(expected = CreationException.class)
+    public void layersDecoratingEachElementAreNotScoped() {
+        Guice.createInjector(new DecoratorModule() {{
+            decorateEach(Foo.class, binder ->
+                    binder.bind(Foo.class).annotatedWith(Names.named("a")).to(FooImpl.class))
+                    .decoratedBy(layer(D2.class), layer(D1.class).in(SINGLETON));
+        }});
+    }
+
+    @Test(expected = CreationException.class)
+    public void duplicateChains() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class);
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D2.class);
+        }});
+    }
+
+    @Test(expected = CreationException.class)
+    public void conflictingChains() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .annotatedWith(Names.named("a"))
+                    .to(FooImpl.class)
+                    .decoratedBy(D2.class, D1.class);
+            bind(Foo.class)
+                    .annotatedWith(Names.named("b"))
+                    .to(OtherFooImpl.class)
+                    .decoratedBy(D2.class, D1.class);
+        }});
+    }
+
+    @Test
+    public void instrumented() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            D2.class,
+                            D1.class)
+                    .instrumented();
+        }});
+        final Foo foo = injector.getInstance(Foo.class);
+        assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+        assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+
+        final List<LayerSnapshot> layers =
+                injector.getInstance(ChainMetrics.key(Key.get(Foo.class))).snapshot();
+        assertThat(layers.size(), is(3));
+        assertThat(layers.get(0).layer(), equalTo(D2.class.getName()));
+        for (final LayerSnapshot layer : layers) {
+            assertThat(layer.calls(), is(2L));
+            assertThat(layer.errors(), is(0L));
+            assertThat(layer.totalTime().count(), is(2L));
+        }
+    }
+
+    @Test
+    public void instrumentedFusedCountsErrors() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FailingFoo.class)
+                    .decoratedBy(
+                            layer(D2.class),
+                            layer(D1.class).in(SINGLETON))
+                    .fused()
+                    .instrumented();
+        }});
+        final Foo foo = injector.getInstance(Foo.class);
+        try {
+            foo.bar();
+            fail();
+        } catch (final IllegalStateException expected) {
+            assertThat(expected.getMessage(), equalTo("FailingFoo"));
+        }
+
+        for (final LayerSnapshot layer
+                : injector.getInstance(ChainMetrics.key(Key.get(Foo.class))).snapshot()) {
+            assertThat(layer.calls(), is(1L));
+            assertThat(layer.errors(), is(1L));
+        }
+    }
+
+    @Test(expected = CreationException.class)
+    public void onlyInterfacesAreInstrumented() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(FooImpl.class)
+                    .annotatedWith(SomeAnnotation.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(FooImpl.class)
+                    .instrumented();
+        }});
+    }
+
+    @Test
+    public void lazyLayers() {
+        for (final boolean fused : new boolean[] {false, true}) {
+            final AtomicInteger built = new AtomicInteger();
+            final Injector injector = Guice.createInjector(
+                    binder -> binder.bind(Foo.class)
+                            .annotatedWith(SomeAnnotation.class)
+                            .toProvider(() -> {
+                                built.incrementAndGet();
+                                return new FooImpl();
+                            }),
+                    new DecoratorModule() {{
+                        final ChainBindingBuilder chain = bind(Foo.class)
+                                .to(Key.get(Foo.class, SomeAnnotation.class))
+                                .decoratedBy(
+                                        layer(D2.class),
+                                        layer(D1.class).lazy());
+                        if (fused) {
+                            chain.fused();
+                        }
+                    }});
+
+            final Foo foo = injector.getInstance(Foo.class);
+            assertThat(built.get(), is(0));
+            assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+            assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+            assertThat(built.get(), is(1));
+        }
+    }
+
+    @Test(expected = CreationException.class)
+    public void onlyInterfacesHaveLazyLayers() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(FooImpl.class)
+                    .annotatedWith(SomeAnnotation.class)
+                    .to(layer(FooImpl.class).lazy())
+                    .decoratedBy(FooImpl.class);
+        }});
+    }
+
+    @Test
+    public void warmUpInParallel() {
+        final AtomicInteger built = new AtomicInteger();
+        final Injector injector = Guice.createInjector(
+                binder -> binder.bind(Foo.class)
+                        .annotatedWith(SomeAnnotation.class)
+                        .toProvider(() -> {
+                            built.incrementAndGet();
+                            return new FooImpl();
+                        }),
+                new DecoratorModule() {{
+                    warmUpInParallel();
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("b"))
+                            .to(Key.get(Foo.class, SomeAnnotation.class))
+                            .decoratedBy(Depending.class)
+                            .asEagerSingleton();
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("a"))
+                            .to(Key.get(Foo.class, SomeAnnotation.class))
+                            .decoratedBy(D1.class)
+                            .fused()
+                            .asEagerSingleton();
+                    bind(Foo.class)
+                            .annotatedWith(Names.named("c"))
+                            .to(Key.get(Foo.class, SomeAnnotation.class))
+                            .decoratedBy(D2.class)
+                            .asEagerSingleton();
+                }});
+        assertThat(built.get(), is(0));
+
+        final WarmUpReport report = ChainWarmUp.of(injector).run();
+
+        assertThat(built.get(), is(3));
+        final List<Key<?>> order = new ArrayList<>(report.buildNanos().keySet());
+        assertThat(order.size(), is(3));
+        assertThat(
+                order.indexOf(Key.get(Foo.class, Names.named("a"))),
+                is(lessThan(order.indexOf(Key.get(Foo.class, Names.named("b"))))));
+        final Foo b = injector.getInstance(Key.get(Foo.class, Names.named("b")));
+        assertThat(b, is(sameInstance(injector.getInstance(Key.get(Foo.class, Names.named("b"))))));
+        assertThat(b.bar(), equalTo("Depending:FooImpl"));
+        assertThat(built.get(), is(3));
+    }
+
+    @Test
+    public void switchable() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            D2.class,
+                            D1.class)
+                    .switchable()
+                    .in(SINGLETON);
+        }});
+        final Foo foo = injector.getInstance(Foo.class);
+        final ChainSwitch chainSwitch =
+                injector.getInstance(ChainSwitch.key(Key.get(Foo.class)));
+        assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+
+        chainSwitch.disable(D1.class);
+        assertThat(chainSwitch.isEnabled(D1.class), is(false));
+        assertThat(foo.bar(), equalTo("D2:FooImpl"));
+
+        chainSwitch.disable(D2.class);
+        assertThat(foo.bar(), equalTo("FooImpl"));
+
+        chainSwitch.enable(D1.class);
+        chainSwitch.enable(D2.class);
+        assertThat(foo.bar(), equalTo("D2:D1:FooImpl"));
+        assertThat(injector.getInstance(Foo.class), is(sameInstance(foo)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void switchOnlyTurnsTheLayersOfItsChain() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class)
+                    .switchable();
+        }}).getInstance(ChainSwitch.key(Key.get(Foo.class))).disable(D2.class);
+    }
+
+    @Test(expected = CreationException.class)
+    public void layersOfSwitchableChainsAreNotScoped() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layer(D2.class),
+                            layer(D1.class).in(SINGLETON))
+                    .switchable();
+        }});
+    }
+
 }
@@ -0,0 +1,204 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class FlightRecorderTest {
+
+    private static interface Foo {
+        String bar();
+    }
+
+    private static class FooImpl implements Foo {
+        @Override
+        public String bar() {
+            return "FooImpl";
+        }
+    }
+
+    private static class D1 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D1(@DecoratedBy(D1.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "D1:" + decorated.bar();
+        }
+    }
+
+    private static class D2 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D2(@DecoratedBy(D2.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "D2:" + decorated.bar();
+        }
+    }
+
+    @Test
+    public void eachInstanceBuiltIsOneEventWithEveryLayer() throws Exception {
+        for (final boolean fused : new boolean[] { false, true }) {
+            final Injector injector = Guice.createInjector(new DecoratorModule() {{
+                final ChainBindingBuilder chain = bind(Foo.class)
+                        .to(FooImpl.class)
+                        .decoratedBy(D1.class, D2.class)
+                        .recorded();
+                if (fused) {
+                    chain.fused();
+                }
+            }});
+
+            final List<RecordedEvent> events = record("decorice.ChainProvision", () -> {
+                injector.getInstance(Foo.class);
+                injector.getInstance(Foo.class);
+            });
+
+            assertThat(events.size(), is(2));
+            final RecordedEvent event = events.get(0);
+            assertThat(event.getString("key"), containsString(Foo.class.getName()));
+            assertThat(event.getInt("depth"), is(2));
+            final String layers = event.getString("layers");
+            assertThat(layers, containsString(D1.class.getName() + " "));
+            assertThat(layers, containsString(D2.class.getName() + " "));
+            assertThat(layers.endsWith(" ns"), is(true));
+        }
+    }
+
+    @Test
+    public void eachCompositionOfASwitchableChainIsOneEvent() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class, D2.class)
+                    .switchable()
+                    .recorded();
+        }});
+        final ChainSwitch chainSwitch =
+                injector.getInstance(ChainSwitch.key(Key.get(Foo.class)));
+
+        final List<RecordedEvent> events = record("decorice.ChainProvision", () -> {
+            final Foo foo = injector.getInstance(Foo.class);
+            chainSwitch.disable(D2.class);
+            assertThat(foo.bar(), equalTo("D1:FooImpl"));
+        });
+
+        assertThat(events.size(), is(2));
+        final String built = events.get(0).getString("layers");
+        assertThat(built, containsString(D1.class.getName() + " "));
+        assertThat(built, containsString(D2.class.getName() + " "));
+        assertThat(built, not(containsString("not built")));
+        final String recomposed = events.get(1).getString("layers");
+        assertThat(recomposed, containsString(D1.class.getName() + " "));
+        assertThat(recomposed, not(containsString(D1.class.getName() + " not built")));
+        assertThat(recomposed, containsString(D2.class.getName() + " not built"));
+    }
+
+    @Test
+    public void callsNameTheDecoratorOfTheirLayer() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class, D2.class)
+                    .recorded();
+        }});
+
+        final List<RecordedEvent> events = record("decorice.LayerCall", () -> {
+            assertThat(injector.getInstance(Foo.class).bar(), equalTo("D1:D2:FooImpl"));
+        });
+
+        assertThat(events.size(), is(3));
+        final List<String> decorators = new ArrayList<>();
+        for (final RecordedEvent event : events) {
+            assertThat(event.getString("method"), equalTo("bar"));
+            final RecordedClass decoratedBy = event.getValue("decoratedBy");
+            decorators.add(decoratedBy == null ? null : decoratedBy.getName());
+        }
+        assertThat(decorators.contains(D1.class.getName()), is(true));
+        assertThat(decorators.contains(D2.class.getName()), is(true));
+        assertThat(decorators.contains(null), is(true));
+    }
+
+    @Test
+    public void layersAreNotProxiedWhileCallEventsAreOff() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class, D2.class)
+                    .recorded(10);
+        }});
+
+        final Foo foo = injector.getInstance(Foo.class);
+
+        assertThat(Proxy.isProxyClass(foo.getClass()), is(false));
+        assertThat(foo.bar(), equalTo("D1:D2:FooImpl"));
+    }
+
+    @Test
+    public void noCallIsRecordedWhenNoneIsSampled() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D1.class)
+                    .recorded(0);
+        }});
+
+        final List<RecordedEvent> events = record("decorice.LayerCall", () -> {
+            final Foo foo = injector.getInstance(Foo.class);
+            assertThat(Proxy.isProxyClass(foo.getClass()), is(false));
+            foo.bar();
+        });
+
+        assertThat(events.isEmpty(), is(true));
+    }
+
+    private static List<RecordedEvent> record(final String event, final Runnable action)
+            throws Exception {
+        final Path file = Files.createTempFile("decorice", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(event).withoutThreshold();
+                recording.start();
+                action.run();
+                recording.stop();
+                recording.dump(file);
+            }
+            final List<RecordedEvent> events = new ArrayList<>();
+            for (final RecordedEvent recorded : RecordingFile.readAllEvents(file)) {
+                if (recorded.getEventType().getName().equals(event)) {
+                    events.add(recorded);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
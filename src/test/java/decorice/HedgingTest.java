@@ -0,0 +1,202 @@
+package decorice;
+
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+public class HedgingTest {
+
+    private static interface Store {
+        String get(String id);
+
+        CompletableFuture<String> find(String id);
+    }
+
+    /**
+     * Answers in a millisecond, except for one call in fifty that takes
+     * half a second, as a replica that stalls would.
+     */
+    private static class StallingStore implements Store {
+        private static final ScheduledExecutorService TIMER =
+                Executors.newSingleThreadScheduledExecutor(r -> {
+                    final Thread thread = new Thread(r, "stalling-store");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String get(final String id) {
+            LockSupport.parkNanos(latency());
+            return "item" + id;
+        }
+
+        @Override
+        public CompletableFuture<String> find(final String id) {
+            final CompletableFuture<String> found = new CompletableFuture<>();
+            TIMER.schedule(() -> found.complete("item" + id), latency(), TimeUnit.NANOSECONDS);
+            return found;
+        }
+
+        private long latency() {
+            return calls.incrementAndGet() % 50 == 25
+                    ? TimeUnit.MILLISECONDS.toNanos(500)
+                    : TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * Answers in a tenth of a millisecond, or in five while the test has it
+     * stall.
+     */
+    private static class BurstyStore implements Store {
+        static volatile boolean stalled;
+
+        @Override
+        public String get(final String id) {
+            LockSupport.parkNanos(stalled
+                    ? TimeUnit.MILLISECONDS.toNanos(5)
+                    : TimeUnit.MICROSECONDS.toNanos(100));
+            return "item" + id;
+        }
+
+        @Override
+        public CompletableFuture<String> find(final String id) {
+            return CompletableFuture.completedFuture(get(id));
+        }
+    }
+
+    @Test
+    public void stalledCallsAreHedged() {
+        final Hedging hedging = Hedging.of("get");
+        final Store store = injector(hedging).getInstance(Store.class);
+        for (int i = 0; i < 50; i++) {
+            assertThat(store.get(Integer.toString(i)), equalTo("item" + i));
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            assertThat(store.get(Integer.toString(i)), equalTo("item" + i));
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        assertThat(hedging.stats().toString(), elapsed, lessThan(TimeUnit.SECONDS.toNanos(1)));
+        assertThat(hedging.stats().hedgesWon(), greaterThan(0L));
+        assertThat(hedging.stats().calls(), equalTo(250L));
+    }
+
+    @Test
+    public void stalledFuturesAreHedged() throws Exception {
+        final Hedging hedging = Hedging.of("find");
+        final Store store = injector(hedging).getInstance(Store.class);
+        for (int i = 0; i < 50; i++) {
+            assertThat(store.find(Integer.toString(i)).get(), equalTo("item" + i));
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            assertThat(store.find(Integer.toString(i)).get(), equalTo("item" + i));
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        assertThat(hedging.stats().toString(), elapsed, lessThan(TimeUnit.SECONDS.toNanos(1)));
+        assertThat(hedging.stats().hedgesWon(), greaterThan(0L));
+    }
+
+    @Test
+    public void hedgesAreCappedAtTheMaximumRate() {
+        final Hedging hedging = Hedging.of("get").maximumRate(0.01);
+        final Store store = injector(hedging).getInstance(Store.class);
+
+        for (int i = 0; i < 250; i++) {
+            store.get(Integer.toString(i));
+        }
+
+        assertThat(hedging.stats().hedged(), lessThanOrEqualTo(3L));
+        assertThat(hedging.stats().capped(), greaterThan(0L));
+    }
+
+    @Test
+    public void aBurstOfStallsIsHedgedAtTheMaximumRate() {
+        final Hedging hedging = Hedging.of("get").minimumDelay(2, TimeUnit.MILLISECONDS);
+        final Store store = injector(BurstyStore.class, hedging).getInstance(Store.class);
+        for (int i = 0; i < 1000; i++) {
+            store.get(Integer.toString(i));
+        }
+        final long hedgedBefore = hedging.stats().hedged();
+
+        BurstyStore.stalled = true;
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertThat(store.get(Integer.toString(i)), equalTo("item" + i));
+            }
+        } finally {
+            BurstyStore.stalled = false;
+        }
+
+        // what the last hundred calls earned, and what the burst earned
+        final long hedged = hedging.stats().hedged() - hedgedBefore;
+        assertThat(hedging.stats().toString(), hedged, lessThanOrEqualTo(20L));
+        assertThat(hedging.stats().toString(), hedged, greaterThan(0L));
+    }
+
+    @Test
+    public void anInterruptedCallerGetsItsInterruptBack() {
+        final Hedging hedging = Hedging.of("get");
+        final Store store = injector(BurstyStore.class, hedging).getInstance(Store.class);
+        for (int i = 0; i < 100; i++) {
+            store.get(Integer.toString(i));
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            store.get("1");
+            fail();
+        } catch (final CancellationException e) {
+            assertThat(e.getMessage(), containsString("interrupted"));
+        }
+        assertThat(Thread.interrupted(), is(true));
+    }
+
+    @Test
+    public void onlyMethodsThatReturnValuesCanBeHedged() {
+        try {
+            injector(Hedging.of("put"));
+            fail();
+        } catch (final CreationException e) {
+            assertThat(e.getMessage(), containsString(
+                    "has no method named put that returns a value to hedge"));
+        }
+    }
+
+    private static Injector injector(final Hedging hedging) {
+        return injector(StallingStore.class, hedging);
+    }
+
+    private static Injector injector(final Class<? extends Store> base, final Hedging hedging) {
+        return Guice.createInjector(new DecoratorModule() {{
+            bind(Store.class)
+                    .to(base)
+                    .decoratedBy(DecoratorModule.<Store>layer(hedging));
+        }});
+    }
+}
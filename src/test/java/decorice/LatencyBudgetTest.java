@@ -0,0 +1,205 @@
+package decorice;
+
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static decorice.DecoratorModule.layer;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class LatencyBudgetTest {
+
+    private static interface Foo {
+        String bar();
+    }
+
+    private static class FooImpl implements Foo {
+        @Override
+        public String bar() {
+            return "FooImpl";
+        }
+    }
+
+    /**
+     * Takes six milliseconds while stalled, as a base slowed down for a
+     * while would.
+     */
+    private static class StallingFoo implements Foo {
+        static volatile boolean stalled;
+
+        @Override
+        public String bar() {
+            if (stalled) {
+                try {
+                    Thread.sleep(6);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "StallingFoo";
+        }
+    }
+
+    /**
+     * Takes two milliseconds for each call under way, as a layer waiting on
+     * a shared resource would.
+     */
+    private static class Auditing implements Foo {
+        private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+
+        private final Foo decorated;
+
+        @Inject
+        public Auditing(@DecoratedBy(Auditing.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            final int calls = IN_FLIGHT.incrementAndGet();
+            try {
+                Thread.sleep(2L * calls);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                IN_FLIGHT.decrementAndGet();
+            }
+            return "Auditing:" + decorated.bar();
+        }
+    }
+
+    private static class Outer implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public Outer(@DecoratedBy(Outer.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "Outer:" + decorated.bar();
+        }
+    }
+
+    @Test
+    public void optionalLayersAreRoutedAroundUnderLoadAndBackAfter() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(layer(Outer.class), layer(Auditing.class).optional())
+                    .latencyBudget(5, TimeUnit.MILLISECONDS);
+        }});
+        final ChainSwitch chainSwitch =
+                injector.getInstance(ChainSwitch.key(Key.get(Foo.class)));
+        final Foo foo = injector.getInstance(Foo.class);
+        assertThat(foo.bar(), equalTo("Outer:Auditing:FooImpl"));
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                calls.add(executor.submit(() -> {
+                    while (chainSwitch.isEnabled(Auditing.class)
+                            && System.nanoTime() < deadline) {
+                        foo.bar();
+                    }
+                }));
+            }
+            for (final Future<?> call : calls) {
+                call.get(20, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(chainSwitch.isEnabled(Auditing.class), is(false));
+        assertThat(foo.bar(), equalTo("Outer:FooImpl"));
+
+        while (!chainSwitch.isEnabled(Auditing.class) && System.nanoTime() < deadline) {
+            foo.bar();
+            Thread.sleep(1);
+        }
+        assertThat(chainSwitch.isEnabled(Auditing.class), is(true));
+        assertThat(foo.bar(), equalTo("Outer:Auditing:FooImpl"));
+    }
+
+    @Test
+    public void optionalLayersAreRoutedBackAfterTheBaseRecovers() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(StallingFoo.class)
+                    .decoratedBy(layer(Outer.class).optional())
+                    .latencyBudget(5, TimeUnit.MILLISECONDS);
+        }});
+        final ChainSwitch chainSwitch =
+                injector.getInstance(ChainSwitch.key(Key.get(Foo.class)));
+        final Foo foo = injector.getInstance(Foo.class);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        StallingFoo.stalled = true;
+        try {
+            while (chainSwitch.isEnabled(Outer.class) && System.nanoTime() < deadline) {
+                foo.bar();
+            }
+            assertThat(chainSwitch.isEnabled(Outer.class), is(false));
+            for (int i = 0; i < 40; i++) {
+                assertThat(foo.bar(), equalTo("StallingFoo"));
+            }
+        } finally {
+            StallingFoo.stalled = false;
+        }
+
+        while (!chainSwitch.isEnabled(Outer.class) && System.nanoTime() < deadline) {
+            foo.bar();
+            Thread.sleep(1);
+        }
+        assertThat(chainSwitch.isEnabled(Outer.class), is(true));
+        assertThat(foo.bar(), equalTo("Outer:StallingFoo"));
+    }
+
+    @Test
+    public void optionalLayersNeedABudget() {
+        try {
+            Guice.createInjector(new DecoratorModule() {{
+                bind(Foo.class)
+                        .to(FooImpl.class)
+                        .decoratedBy(layer(Outer.class), layer(Auditing.class).optional());
+            }});
+            fail();
+        } catch (final CreationException e) {
+            assertThat(e.getMessage(), containsString(
+                    "Only chains with a latency budget can have optional layers"));
+        }
+    }
+
+    @Test
+    public void aBudgetNeedsOptionalLayers() {
+        try {
+            Guice.createInjector(new DecoratorModule() {{
+                bind(Foo.class)
+                        .to(FooImpl.class)
+                        .decoratedBy(Outer.class, Auditing.class)
+                        .latencyBudget(5, TimeUnit.MILLISECONDS);
+            }});
+            fail();
+        } catch (final CreationException e) {
+            assertThat(e.getMessage(), containsString("no optional layer to route around"));
+        }
+    }
+}
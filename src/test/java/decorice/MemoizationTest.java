@@ -0,0 +1,196 @@
+package decorice;
+
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Scopes.SINGLETON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class MemoizationTest {
+
+    private static interface Lookup {
+        String find(int id);
+
+        void forget(int id);
+    }
+
+    private static class CountingLookup implements Lookup {
+        final List<Integer> found = new ArrayList<>();
+
+        @Override
+        public String find(final int id) {
+            found.add(id);
+            return "found" + id;
+        }
+
+        @Override
+        public void forget(final int id) {
+        }
+    }
+
+    private static interface Directory {
+        String find(int id);
+
+        String find(String name);
+    }
+
+    private static class DirectoryImpl implements Directory {
+        @Override
+        public String find(final int id) {
+            return "id" + id;
+        }
+
+        @Override
+        public String find(final String name) {
+            return "name" + name;
+        }
+    }
+
+    private static class Tracing implements Lookup {
+        private final Lookup decorated;
+
+        @Inject
+        public Tracing(@DecoratedBy(Tracing.class) final Lookup decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String find(final int id) {
+            return "traced:" + decorated.find(id);
+        }
+
+        @Override
+        public void forget(final int id) {
+            decorated.forget(id);
+        }
+    }
+
+    @Test
+    public void memoizes() throws Exception {
+        final Memoization memoization = Memoization.of("find");
+        final Injector injector = Guice.createInjector(
+                binder -> binder.bind(CountingLookup.class).in(SINGLETON),
+                new DecoratorModule() {{
+                    bind(Lookup.class)
+                            .to(CountingLookup.class)
+                            .decoratedBy(
+                                    layer(Tracing.class),
+                                    layer(memoization));
+                }});
+        final Lookup lookup = injector.getInstance(Lookup.class);
+
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+        assertThat(lookup.find(2), equalTo("traced:found2"));
+
+        assertThat(injector.getInstance(CountingLookup.class).found, contains(1, 2));
+        final MemoizationStats stats = memoization.stats().get(find());
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(2L));
+        assertThat(stats.hitRate(), is(1.0 / 3));
+    }
+
+    @Test
+    public void entriesHitTwiceSurviveScans() throws Exception {
+        final Memoization memoization = Memoization.of().maximumSize(5);
+        final Injector injector = Guice.createInjector(
+                binder -> binder.bind(CountingLookup.class).in(SINGLETON),
+                new DecoratorModule() {{
+                    bind(Lookup.class)
+                            .to(CountingLookup.class)
+                            .decoratedBy(
+                                    layer(Tracing.class),
+                                    layer(memoization))
+                            .fused()
+                            .in(SINGLETON);
+                }});
+        final Lookup lookup = injector.getInstance(Lookup.class);
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+        lookup.find(1);
+        for (int id = 2; id < 20; id++) {
+            lookup.find(id);
+        }
+        final List<Integer> found = injector.getInstance(CountingLookup.class).found;
+        found.clear();
+
+        lookup.find(1);
+
+        assertThat(found.isEmpty(), is(true));
+        assertThat(memoization.stats().get(find()).evictions(), is(14L));
+    }
+
+    @Test
+    public void expiresAfterWrite() throws InterruptedException {
+        final Injector injector = Guice.createInjector(
+                binder -> binder.bind(CountingLookup.class).in(SINGLETON),
+                new DecoratorModule() {{
+                    bind(Lookup.class)
+                            .to(CountingLookup.class)
+                            .decoratedBy(
+                                    layer(Tracing.class),
+                                    layer(Memoization.of("find")
+                                            .expireAfterWrite(20, TimeUnit.MILLISECONDS)
+                                            .offHeap()))
+                            .in(SINGLETON);
+                }});
+        final Lookup lookup = injector.getInstance(Lookup.class);
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+        Thread.sleep(40);
+        assertThat(lookup.find(1), equalTo("traced:found1"));
+
+        assertThat(injector.getInstance(CountingLookup.class).found, contains(1, 1));
+    }
+
+    @Test(expected = CreationException.class)
+    public void memoizesOnlyMethodsThatReturnSomething() {
+        Guice.createInjector(new DecoratorModule() {{
+            bind(Lookup.class)
+                    .to(CountingLookup.class)
+                    .decoratedBy(
+                            layer(Tracing.class),
+                            layer(Memoization.of("forget")));
+        }});
+    }
+
+    @Test
+    public void overloadsAreCountedApart() throws Exception {
+        final Memoization memoization = Memoization.of("find");
+        final Directory directory = Guice.createInjector(new DecoratorModule() {{
+            bind(Directory.class)
+                    .to(DirectoryImpl.class)
+                    .decoratedBy(DecoratorModule.<Directory>layer(memoization));
+        }}).getInstance(Directory.class);
+        final MemoizationStats byId =
+                memoization.stats().get(Directory.class.getMethod("find", int.class));
+        final MemoizationStats byName =
+                memoization.stats().get(Directory.class.getMethod("find", String.class));
+        assertThat(byId.hitRate(), is(0.0));
+
+        assertThat(directory.find(1), equalTo("id1"));
+        assertThat(directory.find(1), equalTo("id1"));
+        assertThat(directory.find("a"), equalTo("namea"));
+
+        assertThat(byId.hits(), is(1L));
+        assertThat(byId.misses(), is(1L));
+        assertThat(byName.hits(), is(0L));
+        assertThat(byName.misses(), is(1L));
+        assertThat(byName.toString(), startsWith("find(String): "));
+    }
+
+    private static Method find() throws NoSuchMethodException {
+        return Lookup.class.getMethod("find", int.class);
+    }
+}
@@ -0,0 +1,149 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+
+public class OffloadingTest {
+
+    private static interface Remote {
+        CompletableFuture<String> fetch(String id);
+
+        String block(long millis) throws InterruptedException;
+    }
+
+    private static class BlockingRemote implements Remote {
+        @Override
+        public CompletableFuture<String> fetch(final String id) {
+            return CompletableFuture.completedFuture(id + "@" + Thread.currentThread().getName());
+        }
+
+        @Override
+        public String block(final long millis) throws InterruptedException {
+            Thread.sleep(millis);
+            return Thread.currentThread().getName();
+        }
+    }
+
+    private static class Prefixing implements Remote {
+        private final Remote decorated;
+
+        @Inject
+        public Prefixing(@DecoratedBy(Prefixing.class) final Remote decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public CompletableFuture<String> fetch(final String id) {
+            return decorated.fetch("prefixed-" + id);
+        }
+
+        @Override
+        public String block(final long millis) throws InterruptedException {
+            return decorated.block(millis);
+        }
+    }
+
+    @Test
+    public void futuresCompleteOnTheExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                r -> new Thread(r, "offloaded"));
+        try {
+            final Remote remote = injector(Offloading.on(executor)).getInstance(Remote.class);
+
+            assertThat(remote.fetch("a").get(1, TimeUnit.SECONDS), equalTo("prefixed-a@offloaded"));
+            assertThat(remote.block(0), equalTo(Thread.currentThread().getName()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void defaultExecutor() throws Exception {
+        final Remote remote = injector(Offloading.create()).getInstance(Remote.class);
+
+        assertThat(
+                remote.fetch("a").get(1, TimeUnit.SECONDS),
+                not(equalTo("prefixed-a@" + Thread.currentThread().getName())));
+    }
+
+    @Test
+    public void blockingMethodsRunWithATimeout() throws Exception {
+        final Remote remote = injector(Offloading.create().timeout(50, TimeUnit.MILLISECONDS))
+                .getInstance(Remote.class);
+
+        assertThat(remote.block(0), is(not(Thread.currentThread().getName())));
+        try {
+            remote.block(2000);
+            fail();
+        } catch (final OffloadingTimeoutException e) {
+            assertThat(e.getMessage(), containsString("did not return within 50ms"));
+        }
+    }
+
+    @Test
+    public void anInterruptedCallerGetsItsInterruptBack() throws Exception {
+        final Remote remote = injector(Offloading.create().timeout(5, TimeUnit.SECONDS))
+                .getInstance(Remote.class);
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        final Thread caller = new Thread(() -> {
+            try {
+                remote.block(5000);
+            } catch (final Throwable e) {
+                thrown.set(e);
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+        Thread.sleep(100);
+        caller.interrupt();
+        caller.join(1000);
+
+        assertThat(caller.isAlive(), is(false));
+        assertThat(thrown.get(), instanceOf(CancellationException.class));
+        assertThat(interrupted.get(), is(true));
+    }
+
+    @Test
+    public void timedCallsAreNotRunOnTheCaller() throws Exception {
+        final Remote remote = injector(Offloading.on(Runnable::run).timeout(1, TimeUnit.SECONDS))
+                .getInstance(Remote.class);
+
+        try {
+            remote.block(0);
+            fail();
+        } catch (final RejectedExecutionException e) {
+            assertThat(e.getMessage(), containsString("cannot time out on the caller's thread"));
+        }
+    }
+
+    private static Injector injector(final Offloading offloading) {
+        return Guice.createInjector(new DecoratorModule() {{
+            bind(Remote.class)
+                    .to(BlockingRemote.class)
+                    .decoratedBy(
+                            layer(Prefixing.class),
+                            layer(offloading));
+        }});
+    }
+}
@@ -0,0 +1,144 @@
+package decorice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assume.assumeThat;
+
+public class ThreadConfinedTest {
+
+    private static interface Foo {
+        String bar();
+    }
+
+    private static class FooImpl implements Foo {
+        @Override
+        public String bar() {
+            return "FooImpl";
+        }
+    }
+
+    /**
+     * Keeps a buffer that is not safe to share between threads.
+     */
+    private static class Buffering implements Foo {
+        private final Foo decorated;
+        private final StringBuilder buffer = new StringBuilder();
+
+        @Inject
+        public Buffering(@DecoratedBy(Buffering.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            buffer.setLength(0);
+            return buffer.append("Buffering:").append(decorated.bar()).toString();
+        }
+    }
+
+    private static class Outer implements Foo {
+        final Foo decorated;
+
+        @Inject
+        public Outer(@DecoratedBy(Outer.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return "Outer:" + decorated.bar();
+        }
+    }
+
+    @Test
+    public void eachThreadReusesItsOwnChain() throws Exception {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(Buffering.class)
+                    .in(DecoriceScopes.THREAD_CONFINED);
+        }});
+
+        final Foo mine = injector.getInstance(Foo.class);
+        assertThat(injector.getInstance(Foo.class), is(sameInstance(mine)));
+        assertThat(mine.bar(), equalTo("Buffering:FooImpl"));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Foo theirs = executor.submit(() -> injector.getInstance(Foo.class))
+                    .get(5, TimeUnit.SECONDS);
+            assertThat(theirs, is(not(sameInstance(mine))));
+            assertThat(
+                    executor.submit(() -> injector.getInstance(Foo.class)).get(5, TimeUnit.SECONDS),
+                    is(sameInstance(theirs)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void virtualThreadsShareAFrontThatLendsEachCallAnInstance() throws Exception {
+        final ExecutorService executor = Threads.newVirtualThreadPerTaskExecutor();
+        assumeThat("virtual threads, from JDK 21", executor, is(notNullValue()));
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(Buffering.class)
+                    .in(DecoriceScopes.THREAD_CONFINED);
+        }});
+
+        try {
+            final List<Future<Foo>> fronts = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                fronts.add(executor.submit(() -> {
+                    final Foo foo = injector.getInstance(Foo.class);
+                    for (int call = 0; call < 100; call++) {
+                        assertThat(foo.bar(), equalTo("Buffering:FooImpl"));
+                    }
+                    return foo;
+                }));
+            }
+            for (final Future<Foo> front : fronts) {
+                assertThat(front.get(10, TimeUnit.SECONDS), is(sameInstance(fronts.get(0).get())));
+            }
+            assertThat(Proxy.isProxyClass(fronts.get(0).get().getClass()), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void innerLayersCanBeConfined() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(
+                            layer(Outer.class),
+                            layer(Buffering.class).in(DecoriceScopes.THREAD_CONFINED));
+        }});
+
+        final Outer first = (Outer) injector.getInstance(Foo.class);
+        final Outer second = (Outer) injector.getInstance(Foo.class);
+
+        assertThat(first, is(not(sameInstance(second))));
+        assertThat(first.decorated, is(sameInstance(second.decorated)));
+        assertThat(first.bar(), equalTo("Outer:Buffering:FooImpl"));
+    }
+}
@@ -0,0 +1,142 @@
+package decorice.testing;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import org.junit.AssumptionViolatedException;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes the current thread allocates per call of an action,
+ * from the allocation counters of the JVM, so that tests can hold chains
+ * to an allocation budget:
+ *
+ * <pre>
+ * &#64;Rule
+ * public final AllocationBudget allocations = new AllocationBudget();
+ *
+ * &#64;Test
+ * public void callsDoNotAllocate() {
+ *     Foo foo = injector.getInstance(Foo.class);
+ *     allocations.assertAtMost(0, foo::bar);
+ *     allocations.assertAtMost(64, injector, Key.get(Foo.class));
+ * }
+ * </pre>
+ *
+ * <p>Each measurement first runs the action enough times for the JIT to
+ * compile it, so that allocations it removes are not counted, as in
+ * production. What measuring itself allocates is measured with an empty
+ * action and taken off. Tests using the rule are skipped on JVMs without
+ * per-thread allocation counters.
+ */
+public final class AllocationBudget implements TestRule {
+
+    private static final int DEFAULT_ITERATIONS = 20_000;
+
+    private final int warmUpIterations;
+    private final int iterations;
+
+    public AllocationBudget() {
+        this(DEFAULT_ITERATIONS, DEFAULT_ITERATIONS);
+    }
+
+    public AllocationBudget(final int warmUpIterations, final int iterations) {
+        if (warmUpIterations < 0 || iterations <= 0) {
+            throw new IllegalArgumentException(
+                    "Not valid: " + warmUpIterations + " warm-up iterations, "
+                            + iterations + " iterations");
+        }
+        this.warmUpIterations = warmUpIterations;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public Statement apply(final Statement base, final Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                counters();
+                base.evaluate();
+            }
+        };
+    }
+
+    /**
+     * The bytes the current thread allocates per run of {@code action},
+     * rounded down.
+     */
+    public long bytesPerCall(final Runnable action) {
+        final com.sun.management.ThreadMXBean counters = counters();
+        final Runnable nothing = () -> { };
+        measure(counters, nothing, warmUpIterations);
+        measure(counters, action, warmUpIterations);
+        final long overhead = measure(counters, nothing, iterations);
+        final long allocated = measure(counters, action, iterations);
+        return Math.max(0, allocated - overhead) / iterations;
+    }
+
+    /**
+     * The bytes the current thread allocates per {@code getInstance} of
+     * the key.
+     */
+    public long bytesPerInstance(final Injector injector, final Key<?> key) {
+        return bytesPerCall(() -> injector.getInstance(key));
+    }
+
+    /**
+     * @throws AssertionError when a run of {@code action} allocates more
+     *                        than {@code bytes}
+     */
+    public void assertAtMost(final long bytes, final Runnable action) {
+        check(bytes, bytesPerCall(action), "call");
+    }
+
+    /**
+     * @throws AssertionError when a {@code getInstance} of the key
+     *                        allocates more than {@code bytes}
+     */
+    public void assertAtMost(final long bytes, final Injector injector, final Key<?> key) {
+        check(bytes, bytesPerInstance(injector, key), "instance of " + key);
+    }
+
+    private static void check(final long budget, final long allocated, final String what) {
+        if (allocated > budget) {
+            throw new AssertionError(
+                    allocated + " bytes allocated per " + what + ", over a budget of " + budget);
+        }
+    }
+
+    private static long measure(
+            final com.sun.management.ThreadMXBean counters,
+            final Runnable action,
+            final int iterations) {
+        final long thread = Thread.currentThread().getId();
+        final long before = counters.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        return counters.getThreadAllocatedBytes(thread) - before;
+    }
+
+    private static com.sun.management.ThreadMXBean counters() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            throw new AssumptionViolatedException(
+                    "This JVM does not count the bytes threads allocate");
+        }
+        final com.sun.management.ThreadMXBean counters =
+                (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemorySupported()) {
+            throw new AssumptionViolatedException(
+                    "This JVM does not count the bytes threads allocate");
+        }
+        if (!counters.isThreadAllocatedMemoryEnabled()) {
+            counters.setThreadAllocatedMemoryEnabled(true);
+        }
+        return counters;
+    }
+}
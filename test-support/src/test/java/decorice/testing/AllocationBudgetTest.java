@@ -0,0 +1,99 @@
+package decorice.testing;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import decorice.DecoratedBy;
+import decorice.DecoratorModule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.fail;
+
+public class AllocationBudgetTest {
+
+    public static interface Foo {
+        String bar();
+    }
+
+    public static class FooImpl implements Foo {
+        @Override
+        public String bar() {
+            return "FooImpl";
+        }
+    }
+
+    public static class D1 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D1(@DecoratedBy(D1.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return decorated.bar();
+        }
+    }
+
+    public static class D2 implements Foo {
+        private final Foo decorated;
+
+        @Inject
+        public D2(@DecoratedBy(D2.class) final Foo decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public String bar() {
+            return decorated.bar();
+        }
+    }
+
+    @Rule
+    public final AllocationBudget allocations = new AllocationBudget();
+
+    @Test
+    public void singletonChainsDoNotAllocatePerCall() {
+        final Injector injector = Guice.createInjector(
+                binder -> binder.bind(FooImpl.class).in(Singleton.class),
+                new DecoratorModule() {{
+                    bind(Foo.class)
+                            .to(FooImpl.class)
+                            .decoratedBy(D2.class, D1.class)
+                            .in(Singleton.class);
+                }});
+        final Foo foo = injector.getInstance(Foo.class);
+
+        allocations.assertAtMost(0, foo::bar);
+        // Guice allocates a context of its own for every getInstance
+        allocations.assertAtMost(
+                allocations.bytesPerInstance(injector, Key.get(FooImpl.class)),
+                injector,
+                Key.get(Foo.class));
+    }
+
+    @Test
+    public void unscopedChainsAllocatePerInstance() {
+        final Injector injector = Guice.createInjector(new DecoratorModule() {{
+            bind(Foo.class)
+                    .to(FooImpl.class)
+                    .decoratedBy(D2.class, D1.class);
+        }});
+
+        assertThat(allocations.bytesPerInstance(injector, Key.get(Foo.class)), greaterThan(0L));
+        try {
+            allocations.assertAtMost(0, injector, Key.get(Foo.class));
+            fail();
+        } catch (final AssertionError e) {
+            assertThat(e.getMessage(), containsString("over a budget of 0"));
+        }
+    }
+}